@@ -1,20 +1,26 @@
+import android.content.Context;
 import android.support.test.filters.SmallTest;
 import android.support.test.runner.AndroidJUnit4;
 
 import com.hewgill.android.nzsldict.Dictionary;
 import com.hewgill.android.nzsldict.Dictionary.DictItem;
+import com.hewgill.android.nzsldict.SearchSession;
+import com.hewgill.android.nzsldict.SignIcons;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 import static android.support.test.InstrumentationRegistry.getInstrumentation;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertNotEquals;
 
 @RunWith(AndroidJUnit4.class)
@@ -41,50 +47,69 @@ public class DictionaryAndroidUnitTest {
     @Test
     public void dictionary_getWordsExactMatchMainGloss() {
         mResults = mDictionary.getWords("Book");
-        assertEquals(mResults.get(0).gloss, "book");
+        assertEquals(mResults.get(0).gloss(), "book");
     }
 
     @Test
     public void dictionary_getWordsStartsWithMatchMainGlass() {
         mResults = mDictionary.getWords("sunglasse");
-        assertEquals(mResults.get(0).gloss, "sunglasses");
+        assertEquals(mResults.get(0).gloss(), "sunglasses");
     }
 
 
     @Test
     public void dictionary_getWordsContainsMatchMainGlass() {
         mResults = mDictionary.getWords("las");
-        assertEquals(mResults.get(0).gloss, "lasagna");
+        assertEquals(mResults.get(0).gloss(), "lasagna");
     }
 
     @Test
     public void dictionary_getWordsExactMatchMaoriGloss() {
         mResults = mDictionary.getWords("ora");
-        assertEquals(mResults.get(0).gloss, "alive, live, survive");
+        assertEquals(mResults.get(0).gloss(), "alive, live, survive");
     }
 
     @Test
     public void dictionary_getWordsContainsMatchMaoriGloss() {
         mResults = mDictionary.getWords("orang");
-        assertEquals(mResults.get(0).gloss, "medical");
+        assertEquals(mResults.get(0).gloss(), "medical");
     }
 
     @Test
     public void dictionary_getWordsStartsWithMatchMaoriGloss() {
         mResults = mDictionary.getWords("Aorang");
-        assertEquals(mResults.get(0).gloss, "Feilding");
+        assertEquals(mResults.get(0).gloss(), "Feilding");
     }
 
     @Test
     public void dictionary_getWordsExactSecondaryGloss() {
         mResults = mDictionary.getWords("nought");
-        assertEquals(mResults.get(0).gloss, "zero");
+        assertEquals(mResults.get(0).gloss(), "zero");
     }
 
     @Test
     public void dictionary_getWordsContainsSecondaryGloss() {
         mResults = mDictionary.getWords("avoid, keep");
-        assertEquals(mResults.get(0).gloss, "want nothing to do with");
+        assertEquals(mResults.get(0).gloss(), "want nothing to do with");
+    }
+
+    @Test
+    public void dictionary_getWordsFindsMisspeltWord() {
+        mDictionary.buildFuzzyIndex();
+        mResults = mDictionary.getWords("sunglases");
+        assertEquals(mResults.get(0).gloss(), "sunglasses");
+    }
+
+    @Test
+    public void dictionary_getWordsListsNearMissesAfterMatches() {
+        // "horse" is only in a few words, so words with a term one edit away ("hose") are
+        // listed after them
+        mDictionary.buildFuzzyIndex();
+        mResults = mDictionary.getWords("horse");
+        assertEquals(mResults.get(0).gloss(), "horse, ride a horse");
+        List<String> glosses = new ArrayList<>();
+        for (DictItem di : mResults) glosses.add(di.gloss());
+        assertTrue(glosses.indexOf("hose") > 0);
     }
 
     @Test
@@ -93,7 +118,7 @@ public class DictionaryAndroidUnitTest {
         List<DictItem> resultsThatAreAuckland = new ArrayList<>();
 
         for (DictItem di : mResults) {
-            if (di.gloss.equals("Auckland")) resultsThatAreAuckland.add(di);
+            if (di.gloss().equals("Auckland")) resultsThatAreAuckland.add(di);
         }
 
         // The term 'Auckland' matches both an exact match and has few enough results it appears
@@ -103,18 +128,99 @@ public class DictionaryAndroidUnitTest {
         assertEquals(resultsThatAreAuckland.size(), 5);
     }
 
+    @Test
+    public void dictionary_compiledWordListMatchesText() {
+        List<DictItem> compiled = mDictionary.getWords();
+        List<DictItem> text = Dictionary.fromWordList(getInstrumentation().getTargetContext()).getWords();
+        assertEquals(text.size(), compiled.size());
+        for (int i = 0; i < text.size(); i++) {
+            DictItem c = compiled.get(i);
+            DictItem t = text.get(i);
+            assertEquals(t.gloss(), c.gloss());
+            assertEquals(t.minor(), c.minor());
+            assertEquals(t.maori(), c.maori());
+            assertEquals(t.image(), c.image());
+            assertEquals(t.video(), c.video());
+            assertEquals(t.handshape(), c.handshape());
+            assertEquals(t.location(), c.location());
+        }
+    }
+
+    @Test
+    public void dictionary_readWordMatchesLoadedWord() {
+        for (int id : new int[]{0, 1234, mDictionary.getWords().size() - 1}) {
+            DictItem loaded = mDictionary.getWord(id);
+            DictItem read = Dictionary.readWord(getInstrumentation().getTargetContext(), id);
+            assertEquals(id, loaded.id);
+            assertEquals(id, read.id);
+            assertEquals(loaded.gloss(), read.gloss());
+            assertEquals(loaded.video(), read.video());
+        }
+    }
+
+    @Test
+    public void searchSession_refinedSearchMatchesFullSearch() {
+        SearchSession session = new SearchSession(mDictionary);
+        for (String term : new String[]{"b", "bo", "boo", "book", "boo", "bo", "ba"}) {
+            assertEquals(mDictionary.getWords(term), session.getWords(term));
+        }
+    }
+
+    @Test
+    public void searchCursor_pagesMatchFullSearch() {
+        mDictionary.buildFuzzyIndex();
+        for (String term : new String[]{"a", "bo", "book", "horse"}) {
+            Dictionary.SearchCursor cursor = mDictionary.getWordsCursor(term);
+            List<DictItem> pages = new ArrayList<>();
+            while (cursor.hasMore()) {
+                List<DictItem> page = cursor.next(12);
+                assertTrue(page.size() <= 12);
+                pages.addAll(page);
+            }
+            assertEquals(mDictionary.getWords(term), pages);
+        }
+    }
+
+    @Test
+    public void searchStats_countsSearches() {
+        mDictionary.getWords("book");
+        mDictionary.getWordsByHandshape("1.1.1", null);
+        StringWriter report = new StringWriter();
+        mDictionary.getStats().dump("", new PrintWriter(report));
+        assertTrue(report.toString().contains("keyword search, first page: 1\n"));
+        assertTrue(report.toString().contains("handshape/location filter: 1\n"));
+    }
+
+    @Test
+    public void signIcons_matchDrawablesNamedByWords() {
+        Context context = getInstrumentation().getTargetContext();
+        for (DictItem di : mDictionary.getWords()) {
+            assertEquals(di.handshape(), resourceId(context, di.handshapeImage()), SignIcons.handshapeDrawable(di.handshape()));
+            assertEquals(di.location(), resourceId(context, di.locationImage()), SignIcons.locationDrawable(di.location()));
+        }
+    }
+
+    private static int resourceId(Context context, String drawable) {
+        return context.getResources().getIdentifier(drawable, "drawable", context.getPackageName());
+    }
+
     @Test
     public void dictionaryItem_imagePathHandlesMissingImage() {
-        DictItem di = new DictItem();
-        di.image = "";
+        DictItem di = new DictItem("gloss", "", "", "", "", "1.1.1", "chest");
         assertEquals(di.imagePath(), "");
     }
 
     @Test
     public void dictionaryItem_imagePathHandlesRegularImage() {
-        DictItem di = new DictItem();
-        di.image = "picture_w30_6739.png";
+        DictItem di = new DictItem("gloss", "", "", "picture_w30_6739.png", "", "1.1.1", "chest");
         String expectedPath = "images/signs/picture_w30_6739.png";
         assertEquals(di.imagePath(), expectedPath);
     }
+
+    @Test
+    public void dictionaryItem_handshapeAndLocationImages() {
+        DictItem di = new DictItem("gloss", "", "", "", "", "1.1.1", "chest");
+        assertEquals(di.handshapeImage(), "handshape_1_1_1");
+        assertEquals(di.locationImage(), "location_4_12_chest");
+    }
 }
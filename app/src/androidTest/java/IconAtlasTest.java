@@ -0,0 +1,47 @@
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.hewgill.android.nzsldict.IconAtlas;
+import com.hewgill.android.nzsldict.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+
+import static android.support.test.InstrumentationRegistry.getInstrumentation;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class IconAtlasTest {
+    @Test
+    public void iconAtlas_hasEveryGalleryDrawable() throws IllegalAccessException {
+        Context context = getInstrumentation().getTargetContext();
+        IconAtlas atlas = IconAtlas.load(context.getAssets());
+        assertNotNull(atlas);
+        int icons = 0;
+        for (Field field : R.drawable.class.getFields()) {
+            String name = field.getName();
+            if (!name.startsWith("handshape_") && !name.startsWith("location_")) continue;
+            Drawable icon = atlas.getIcon(name);
+            assertNotNull(name, icon);
+            // The atlas icon may be smaller, but must have the same shape.
+            Drawable original = context.getResources().getDrawable(field.getInt(null));
+            float ratio = (float) original.getIntrinsicWidth() / original.getIntrinsicHeight();
+            assertEquals(name, ratio, (float) icon.getIntrinsicWidth() / icon.getIntrinsicHeight(), 0.02f);
+            icons++;
+        }
+        assertEquals(84, icons);
+    }
+
+    @Test
+    public void iconAtlas_missingIconIsNull() {
+        IconAtlas atlas = IconAtlas.load(getInstrumentation().getTargetContext().getAssets());
+        assertNull(atlas.getIcon("handshape_9_9_9"));
+    }
+}
@@ -0,0 +1,239 @@
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.hewgill.android.nzsldict.VideoCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static android.support.test.InstrumentationRegistry.getInstrumentation;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class VideoCacheTest {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private File mDirectory;
+    private ServerSocket mServer;
+    private Thread mServerThread;
+    private volatile int mRequests;
+    private volatile long mBytesSent;
+    // When set, the server claims a longer body than it sends, like a dropped connection.
+    private volatile boolean mTruncate;
+    // When set, the video's last box claims to be longer than the video, as if the server had
+    // sent part of it and no length.
+    private volatile boolean mCutBox;
+
+    @Before
+    public void startServer() throws IOException {
+        mDirectory = new File(getInstrumentation().getTargetContext().getCacheDir(), "video-cache-test");
+        deleteDirectory();
+        mServer = new ServerSocket(0);
+        mServerThread = new Thread(new Runnable() {
+            public void run() {
+                while (!mServer.isClosed()) {
+                    try {
+                        serve(mServer.accept());
+                    } catch (IOException x) {
+                        // closed
+                    }
+                }
+            }
+        });
+        mServerThread.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        mServer.close();
+        mServerThread.join();
+        deleteDirectory();
+    }
+
+    private void deleteDirectory() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * A minimal MP4 file: a file type box, an empty movie box, and a media data box filled
+     * with a byte depending on the path.
+     */
+    private byte[] body(String path) {
+        byte[] body = new byte[path.length() * 1000];
+        Arrays.fill(body, (byte) path.charAt(path.length() - 1));
+        ByteBuffer boxes = ByteBuffer.wrap(body);
+        boxes.putInt(16).put("ftypisom".getBytes(ASCII)).putInt(0);
+        boxes.putInt(8).put("moov".getBytes(ASCII));
+        boxes.putInt(body.length - 24 + (mCutBox ? 100 : 0)).put("mdat".getBytes(ASCII));
+        return body;
+    }
+
+    private void serve(Socket socket) throws IOException {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String path = in.readLine().split(" ")[1];
+            String range = null;
+            String header;
+            while (!(header = in.readLine()).isEmpty()) {
+                if (header.toLowerCase().startsWith("range: bytes=")) range = header.substring(13);
+            }
+            mRequests++;
+            byte[] body = body(path);
+            OutputStream out = socket.getOutputStream();
+            int length = mTruncate ? body.length + 100 : body.length;
+            int first = 0;
+            int last = body.length - 1;
+            if (range != null) {
+                String[] r = range.split("-", -1);
+                first = Integer.parseInt(r[0]);
+                if (!r[1].isEmpty()) last = Math.min(last, Integer.parseInt(r[1]));
+                out.write(("HTTP/1.0 206 Partial Content\r\nContent-Type: video/mp4\r\nContent-Range: bytes " + first + "-" + last + "/" + length
+                        + "\r\nContent-Length: " + (last - first + 1) + "\r\n\r\n").getBytes("US-ASCII"));
+            } else {
+                out.write(("HTTP/1.0 200 OK\r\nContent-Type: video/mp4\r\nContent-Length: " + length + "\r\n\r\n").getBytes("US-ASCII"));
+            }
+            out.write(body, first, last - first + 1);
+            mBytesSent += last - first + 1;
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + mServer.getLocalPort() + path;
+    }
+
+    private static byte[] read(File f) throws IOException {
+        byte[] data = new byte[(int) f.length()];
+        InputStream in = new FileInputStream(f);
+        try {
+            int off = 0;
+            while (off < data.length) off += in.read(data, off, data.length - off);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    @Test
+    public void videoCache_downloadedVideoIsServedFromCache() throws IOException {
+        VideoCache cache = new VideoCache(mDirectory, 1024 * 1024);
+        assertNull(cache.get(url("/a.mp4")));
+        File f = cache.download(url("/a.mp4"));
+        assertTrue(Arrays.equals(body("/a.mp4"), read(f)));
+        assertEquals(1, mRequests);
+
+        assertNotNull(cache.get(url("/a.mp4")));
+        assertEquals(1, mRequests);
+    }
+
+    @Test
+    public void videoCache_limitedDownloadIsCarriedOn() throws IOException {
+        VideoCache cache = new VideoCache(mDirectory, 1024 * 1024);
+        assertNull(cache.download(url("/a.mp4"), 2000));
+        assertNull(cache.get(url("/a.mp4")));
+        assertEquals(2000, mBytesSent);
+
+        File f = cache.download(url("/a.mp4"));
+        assertTrue(Arrays.equals(body("/a.mp4"), read(f)));
+        // only the rest of the video was asked for
+        assertEquals(body("/a.mp4").length, mBytesSent);
+    }
+
+    @Test
+    public void videoCache_openedVideoIsCachedWhateverThePrefetchBudget() throws Exception {
+        VideoCache cache = new VideoCache(mDirectory, 1024 * 1024);
+        // not prefetched (as with Data Saver), or prefetched within a budget smaller than it
+        assertVideo(body("/a.mp4"), open(cache, url("/a.mp4")));
+        cache.fetch(url("/b.mp4"), 0);
+        assertVideo(body("/b.mp4"), open(cache, url("/b.mp4")));
+        cache.fetch(url("/c.mp4"), 2000);
+        assertVideo(body("/c.mp4"), open(cache, url("/c.mp4")));
+    }
+
+    private static void assertVideo(byte[] expected, File f) throws IOException {
+        assertNotNull(f);
+        assertTrue(Arrays.equals(expected, read(f)));
+    }
+
+    private static File open(VideoCache cache, final String url) throws InterruptedException {
+        final File[] opened = new File[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        cache.open(url, new VideoCache.Callback() {
+            public void onOpened(File cached) {
+                opened[0] = cached;
+                done.countDown();
+            }
+        });
+        assertTrue("opened " + url, done.await(10, TimeUnit.SECONDS));
+        assertEquals(opened[0], cache.get(url));
+        return opened[0];
+    }
+
+    @Test
+    public void videoCache_truncatedDownloadIsNotCached() {
+        VideoCache cache = new VideoCache(mDirectory, 1024 * 1024);
+        mTruncate = true;
+        try {
+            cache.download(url("/a.mp4"));
+            fail("truncated download should fail");
+        } catch (IOException x) {
+            // expected
+        }
+        assertNull(cache.get(url("/a.mp4")));
+    }
+
+    @Test
+    public void videoCache_incompleteVideoIsNotCached() {
+        VideoCache cache = new VideoCache(mDirectory, 1024 * 1024);
+        mCutBox = true;
+        try {
+            cache.download(url("/a.mp4"));
+            fail("incomplete video should fail");
+        } catch (IOException x) {
+            // expected
+        }
+        assertNull(cache.get(url("/a.mp4")));
+    }
+
+    @Test
+    public void videoCache_evictsLeastRecentlyUsed() throws IOException {
+        // room for two of the 10000 byte videos
+        VideoCache cache = new VideoCache(mDirectory, 25000);
+        cache.download(url("/one/a.mp4")).setLastModified(1000);
+        cache.download(url("/one/b.mp4")).setLastModified(2000);
+        cache.get(url("/one/a.mp4"));
+        cache.download(url("/one/c.mp4"));
+
+        assertNotNull(cache.get(url("/one/a.mp4")));
+        assertNull(cache.get(url("/one/b.mp4")));
+        assertNotNull(cache.get(url("/one/c.mp4")));
+    }
+}
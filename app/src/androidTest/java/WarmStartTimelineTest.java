@@ -0,0 +1,87 @@
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.filters.LargeTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.hewgill.android.nzsldict.Dictionary;
+import com.hewgill.android.nzsldict.NZSLDictionary;
+import com.hewgill.android.nzsldict.R;
+import com.hewgill.android.nzsldict.StartupTimeline;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static android.support.test.InstrumentationRegistry.getInstrumentation;
+import static android.support.test.espresso.Espresso.onView;
+import static android.support.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static android.support.test.espresso.action.ViewActions.typeText;
+import static android.support.test.espresso.matcher.ViewMatchers.withId;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks the startup timeline of a warm start against budgets, so that a change which slows
+ * down starting the main screen fails here. The budgets are for a low end device, with room to
+ * spare.
+ *
+ * The test process is already running, so this isn't a cold start: Application.onCreate has
+ * run and the dictionary has usually loaded by the time the main screen starts. Each test
+ * restarts the timeline, which is shared by the whole process, and times creating the main
+ * screen, its first frame and the first search. Loading the dictionary is timed on its own.
+ * A cold start, with the dictionary loading while the main screen is created, can only be
+ * measured from a new process, as the timeline logged on startup does.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class WarmStartTimelineTest {
+    private static final long DICTIONARY_LOAD_BUDGET_MS = 1500;
+    private static final long ACTIVITY_CREATE_BUDGET_MS = 1000;
+    private static final long FIRST_FRAME_BUDGET_MS = 1500;
+    private static final long FIRST_SEARCH_BUDGET_MS = 1000;
+    private static final long WAIT_MS = 10000;
+
+    @Rule
+    public ActivityTestRule<NZSLDictionary> mActivityRule = new ActivityTestRule<>(NZSLDictionary.class, false, false);
+
+    @Before
+    public void restartTimeline() {
+        StartupTimeline.start();
+    }
+
+    @Test
+    public void warmStart_withinBudgets() {
+        mActivityRule.launchActivity(new Intent());
+        onView(withId(R.id.building_list_search_box)).perform(typeText("Food"), closeSoftKeyboard());
+        waitFor(StartupTimeline.FIRST_SEARCH_RESULTS);
+
+        long create = StartupTimeline.sectionMillis(StartupTimeline.MAIN_ACTIVITY_CREATE);
+        assertTrue("main activity created in " + create + " ms", create >= 0 && create <= ACTIVITY_CREATE_BUDGET_MS);
+
+        assertTrue("first frame drawn", StartupTimeline.markMillis(StartupTimeline.FIRST_FRAME) >= 0);
+        long firstFrame = StartupTimeline.markMillis(StartupTimeline.FIRST_FRAME)
+                - StartupTimeline.sectionStartMillis(StartupTimeline.MAIN_ACTIVITY_CREATE);
+        assertTrue("first frame drawn " + firstFrame + " ms after creating main activity", firstFrame <= FIRST_FRAME_BUDGET_MS);
+
+        assertTrue("first search results shown", StartupTimeline.markMillis(StartupTimeline.FIRST_SEARCH_RESULTS) >= 0);
+        long search = StartupTimeline.sectionMillis(StartupTimeline.FIRST_SEARCH);
+        assertTrue("first search results shown " + search + " ms after typing", search >= 0 && search <= FIRST_SEARCH_BUDGET_MS);
+    }
+
+    @Test
+    public void dictionaryLoad_withinBudget() {
+        long begin = SystemClock.uptimeMillis();
+        new Dictionary(getInstrumentation().getTargetContext());
+        long load = SystemClock.uptimeMillis() - begin;
+        assertTrue("dictionary loaded in " + load + " ms", load <= DICTIONARY_LOAD_BUDGET_MS);
+    }
+
+    private static void waitFor(String mark) {
+        long deadline = SystemClock.uptimeMillis() + WAIT_MS;
+        while (StartupTimeline.markMillis(mark) < 0 && !StartupTimeline.isFinished()
+                && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+        }
+    }
+}
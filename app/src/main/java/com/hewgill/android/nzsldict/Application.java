@@ -1,15 +1,227 @@
 package com.hewgill.android.nzsldict;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import uk.co.chrisjenx.calligraphy.CalligraphyConfig;
 
 public class Application extends android.app.Application {
+    /**
+     * Called on the main thread once the dictionary has been loaded.
+     */
+    public interface DictionaryListener {
+        void onDictionaryLoaded(Dictionary dictionary);
+    }
+
+    private final Object mDictionaryLock = new Object();
+    private Dictionary mDictionary;
+    // Set instead of mDictionary if the dictionary couldn't be loaded.
+    private IllegalStateException mDictionaryError;
+    private final List<DictionaryListener> mDictionaryListeners = new ArrayList<>();
+    private Handler mMainHandler;
+    private ImageLoader mImageLoader;
+    private IconAtlas mIconAtlas;
+    private boolean mIconAtlasLoaded;
+    private VideoCache mVideoCache;
+    private VideoPrefetcher mVideoPrefetcher;
+
+    private static final long VIDEO_CACHE_BYTES = 64 * 1024 * 1024;
+
+    public static Application get(Context context) {
+        return (Application) context.getApplicationContext();
+    }
+
     @Override
     public void onCreate() {
+        StartupTimeline.start();
+        long begin = StartupTimeline.begin("Application.onCreate");
         super.onCreate();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        // The dictionary is loaded once per process, off the main thread, and shared by every
+        // activity so that recreating one never loads it again.
+        new Thread(new Runnable() {
+            public void run() {
+                loadDictionary();
+            }
+        }, "dictionary-loader").start();
         CalligraphyConfig.initDefault(new CalligraphyConfig.Builder()
                 .setDefaultFontPath("fonts/Montserrat-Regular.ttf")
                 .setFontAttrId(R.attr.fontPath)
                 .build()
         );
+        StartupTimeline.end("Application.onCreate", begin);
+    }
+
+    private void loadDictionary() {
+        long start = System.currentTimeMillis();
+        long begin = StartupTimeline.begin(StartupTimeline.LOAD_DICTIONARY);
+        Dictionary dictionary;
+        try {
+            dictionary = new Dictionary(this);
+            if (dictionary.getWords().isEmpty()) {
+                throw new IllegalStateException("the word list is empty");
+            }
+        } catch (RuntimeException x) {
+            dictionaryFailed(x);
+            return;
+        } finally {
+            StartupTimeline.end(StartupTimeline.LOAD_DICTIONARY, begin);
+        }
+        Log.d("dictionary", "loaded " + dictionary.getWords().size() + " words in " + (System.currentTimeMillis() - start) + "ms");
+        synchronized (mDictionaryLock) {
+            mDictionary = dictionary;
+            mDictionaryLock.notifyAll();
+        }
+        mMainHandler.post(new Runnable() {
+            public void run() {
+                List<DictionaryListener> listeners = new ArrayList<>(mDictionaryListeners);
+                mDictionaryListeners.clear();
+                for (DictionaryListener listener : listeners) {
+                    listener.onDictionaryLoaded(mDictionary);
+                }
+            }
+        });
+        // Searches can run while this is built, they just don't find near misses until then.
+        long fuzzy = StartupTimeline.begin("build fuzzy index");
+        dictionary.buildFuzzyIndex();
+        StartupTimeline.end("build fuzzy index", fuzzy);
+    }
+
+    private void dictionaryFailed(RuntimeException x) {
+        Log.e("dictionary", "can't load the dictionary", x);
+        // The word lists are built into the app, so there's nothing to wait for. Waiters get the
+        // error, and listeners crash the app with it rather than never being called.
+        synchronized (mDictionaryLock) {
+            mDictionaryError = new IllegalStateException("can't load the dictionary", x);
+            mDictionaryLock.notifyAll();
+        }
+        mMainHandler.post(new Runnable() {
+            public void run() {
+                if (!mDictionaryListeners.isEmpty()) throw mDictionaryError;
+            }
+        });
+    }
+
+    /**
+     * Return the image loader shared by every activity. Must be called on the main thread.
+     */
+    public ImageLoader getImageLoader() {
+        if (mImageLoader == null) {
+            mImageLoader = new ImageLoader(this);
+        }
+        return mImageLoader;
+    }
+
+    /**
+     * Return the handshape and location icons shared by every activity, loading them the first
+     * time, or null if they couldn't be loaded. Must be called on the main thread.
+     */
+    public IconAtlas getIconAtlas() {
+        if (!mIconAtlasLoaded) {
+            mIconAtlas = IconAtlas.load(getAssets());
+            mIconAtlasLoaded = true;
+        }
+        return mIconAtlas;
+    }
+
+    /**
+     * Return the sign video cache shared by every activity. Must be called on the main thread.
+     */
+    public VideoCache getVideoCache() {
+        if (mVideoCache == null) {
+            mVideoCache = new VideoCache(new File(getCacheDir(), "videos"), VIDEO_CACHE_BYTES);
+        }
+        return mVideoCache;
+    }
+
+    /**
+     * Return the video prefetcher shared by every activity. Must be called on the main thread.
+     */
+    public VideoPrefetcher getVideoPrefetcher() {
+        if (mVideoPrefetcher == null) {
+            mVideoPrefetcher = new VideoPrefetcher(this, getVideoCache());
+        }
+        return mVideoPrefetcher;
+    }
+
+    /**
+     * Return the dictionary, or null if it hasn't finished loading yet.
+     */
+    public Dictionary getDictionary() {
+        synchronized (mDictionaryLock) {
+            return mDictionary;
+        }
+    }
+
+    /**
+     * Return the word with the given id. This never waits for the dictionary to load, so may
+     * be called on the main thread. Throws IllegalStateException if the word can't be read.
+     */
+    public Dictionary.DictItem getWord(int id) {
+        Dictionary dictionary = getDictionary();
+        if (dictionary != null) {
+            return dictionary.getWord(id);
+        }
+        // After the process has been killed a word's activity can be restored before the
+        // dictionary has loaded again, so read just the one word rather than wait for it.
+        Dictionary.DictItem item = Dictionary.readWord(this, id);
+        if (item == null) {
+            // The compiled word list is always built into the app, so this is a bug rather
+            // than something to wait out.
+            throw new IllegalStateException("can't read word " + id + " from the compiled word list");
+        }
+        return item;
+    }
+
+    /**
+     * Return the dictionary, waiting for it to finish loading if necessary. This must not be
+     * called on the main thread. Throws IllegalStateException if the dictionary couldn't be
+     * loaded.
+     */
+    public Dictionary awaitDictionary() {
+        synchronized (mDictionaryLock) {
+            while (mDictionary == null) {
+                if (mDictionaryError != null) throw mDictionaryError;
+                try {
+                    mDictionaryLock.wait();
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return mDictionary;
+        }
+    }
+
+    /**
+     * Call the listener on the main thread once the dictionary has loaded. If it already has,
+     * the listener is called immediately. Must be called on the main thread. Throws
+     * IllegalStateException if the dictionary couldn't be loaded, then or later.
+     */
+    public void whenDictionaryLoaded(DictionaryListener listener) {
+        Dictionary dictionary;
+        synchronized (mDictionaryLock) {
+            if (mDictionaryError != null) throw mDictionaryError;
+            dictionary = mDictionary;
+        }
+        if (dictionary != null) {
+            listener.onDictionaryLoaded(dictionary);
+        } else {
+            mDictionaryListeners.add(listener);
+        }
+    }
+
+    /**
+     * Stop waiting for the dictionary, for example when an activity is destroyed before it
+     * has loaded.
+     */
+    public void removeDictionaryListener(DictionaryListener listener) {
+        mDictionaryListeners.remove(listener);
     }
 }
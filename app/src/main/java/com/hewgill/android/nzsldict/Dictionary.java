@@ -1,30 +1,35 @@
 package com.hewgill.android.nzsldict;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.text.Normalizer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 
 public class Dictionary {
 
@@ -33,14 +38,16 @@ public class Dictionary {
     private static final Integer EXACT_SECONDARY_MATCH_WEIGHTING = 70;
     private static final Integer CONTAINS_SECONDARY_MATCH_WEIGHTING = 60;
 
-    public static class DictItem implements Serializable, Comparable {
-        public String gloss;
-        public String minor;
-        public String maori;
-        public String image;
-        public String video;
-        public String handshape;
-        public String location;
+    /**
+     * A word in the dictionary. This is a view of one row of the dictionary's word store.
+     */
+    public static class DictItem implements Comparable {
+        private final WordStore store;
+        private final int row;
+        // The word's position in the dictionary. Words are passed between activities and
+        // fragments by this id, which stays the same from one run to the next because the
+        // compiled word list is sorted when it is built.
+        public final int id;
 
         static Map<String, String> Locations = new HashMap<String, String>();
 
@@ -70,72 +77,215 @@ public class Dictionary {
             Locations.put("upper leg", "location_4_15_upper_leg");
         }
 
-        ;
-
-        public DictItem() {
-            gloss = null;
-            minor = null;
-            maori = null;
-            image = null;
-            video = null;
-            handshape = null;
-            location = null;
+        DictItem(WordStore store, int row, int id) {
+            this.store = store;
+            this.row = row;
+            this.id = id;
         }
 
+        /**
+         * Make a word that isn't part of a dictionary.
+         */
         public DictItem(String gloss, String minor, String maori, String image, String video, String handshape, String location) {
-            this.gloss = gloss;
-            this.minor = minor;
-            this.maori = maori;
-            this.image = image;
-            this.video = video;
-            this.handshape = handshape;
-            this.location = location;
+            this(WordStore.of(gloss, minor, maori, image, video, handshape, location), 0, -1);
+        }
+
+        public String gloss() {
+            return store.gloss[row];
+        }
+
+        public String minor() {
+            return store.minor[row];
+        }
+
+        public String maori() {
+            return store.maori[row];
+        }
+
+        public String image() {
+            return store.image[row];
+        }
+
+        public String video() {
+            return store.video(row);
+        }
+
+        public String handshape() {
+            return store.handshape(row);
+        }
+
+        public String location() {
+            return store.location(row);
         }
 
         public String imagePath() {
+            String image = image();
             if (image.isEmpty()) return "";
             String assetName = "images/signs/" + image.toLowerCase();
             return assetName;
         }
 
         public String handshapeImage() {
-            return "handshape_" + handshape.replaceAll("[.]", "_");
+            return store.handshapeImage(row);
         }
 
         public String locationImage() {
-            String r = Locations.get(location);
-            if (r == null) {
-                r = "";
-            }
-            return r;
+            return store.locationImage(row);
         }
 
         public String toString() {
-            return gloss + "|" + minor + "|" + maori;
+            return gloss() + "|" + minor() + "|" + maori();
         }
 
         
         @Override
         public int compareTo(@NonNull Object o) {
             DictItem other = (DictItem) o;
-            return this.image.compareTo(other.image);
+            return this.image().compareTo(other.image());
         }
     }
 
+    // Every word's fields, and a view of each row in sorted order.
+    private WordStore store;
     private ArrayList<DictItem> words = new ArrayList();
 
+    // Normalised copies of each word's gloss, minor and maori fields, indexed the same as
+    // words. These are built once at load time so that searching never has to normalise
+    // dictionary entries.
+    private String[] searchGloss;
+    private String[] searchMinor;
+    private String[] searchMaori;
+
+    // Sorted index of the normalised gloss and maori fields, used to find exact and starts
+    // with matches.
+    private PrefixIndex prefixIndex;
+
+    // Trigram indexes over the normalised primary (gloss and maori) and secondary (minor)
+    // fields, used to narrow down the words that need to be checked for a search term.
+    private TrigramIndex primaryIndex;
+    private TrigramIndex secondaryIndex;
+
+    // Index of the terms in all the normalised fields for finding near misses, used when a
+    // search finds few words otherwise. It takes a while to build, so it isn't built while the
+    // dictionary loads but by buildFuzzyIndex afterwards, and searches before then don't look
+    // for near misses.
+    private volatile FuzzyIndex fuzzyIndex;
+
+    // The position of each word when sorted by image name, and the word at each position.
+    // Results within a bucket are listed in this order.
+    private int[] imageRank;
+    private int[] byImageRank;
+
+    // The words with each handshape and location, as sets of word indexes, indexed by the
+    // word store's code for the handshape or location.
+    private BitSet[] handshapeWords;
+    private BitSet[] locationWords;
+    private final SearchStats stats = new SearchStats();
+
+    private static final byte EXACT_PREFIX_MATCH = 2;
+    private static final byte STARTS_WITH_PREFIX_MATCH = 1;
+
+    // Near misses are only looked for when a search finds fewer words than this, and the term
+    // is at least this long. Longer terms allow more edits.
+    private static final int FUZZY_FEW_RESULTS = 5;
+    private static final int FUZZY_MIN_LENGTH = 4;
+    private static final int FUZZY_TWO_EDIT_LENGTH = 8;
+    // Looking for near misses gives up after comparing this many terms, so it can't slow down
+    // typing. Typos of words in the dictionary compare at most about 1,800 terms at one edit
+    // and 4,400 at two.
+    private static final int FUZZY_MAX_VISITS = 5000;
+
+    private static final String WORD_LIST = "db/nzsl.dat";
+    private static final String COMPILED_WORD_LIST = "db/nzsl.bin";
+
     public Dictionary(Context context) {
+        this(context.getAssets(), true);
+    }
+
+    /**
+     * Load the dictionary from the text word list instead of the compiled binary one, which is
+     * how the two are checked against each other.
+     */
+    public static Dictionary fromWordList(Context context) {
+        return new Dictionary(context.getAssets(), false);
+    }
+
+    private Dictionary(AssetManager assets, boolean compiled) {
+        if (!compiled || !readCompiledWordList(assets)) {
+            readWordList(assets);
+        }
+        words.ensureCapacity(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            words.add(new DictItem(store, i, i));
+        }
+        buildSearchFields();
+        buildFilterIndexes();
+    }
+
+    /**
+     * Read a single word straight from the compiled word list, without loading the rest of
+     * the dictionary. This is for restoring a word's activity after the process has been
+     * killed, before the shared dictionary has loaded again. Returns null if the word can't
+     * be read.
+     */
+    public static DictItem readWord(Context context, int id) {
+        try {
+            return new DictionaryFile(mapAsset(context.getAssets(), COMPILED_WORD_LIST)).item(id);
+        } catch (IOException x) {
+            Log.d("dictionary", "exception reading word " + id + " from compiled word list " + x.getMessage());
+            return null;
+        }
+    }
+
+    private boolean readCompiledWordList(AssetManager assets) {
+        try {
+            store = new DictionaryFile(mapAsset(assets, COMPILED_WORD_LIST)).store();
+            return true;
+        } catch (IOException x) {
+            Log.d("dictionary", "exception reading compiled word list, using text word list " + x.getMessage());
+            return false;
+        }
+    }
+
+    private static ByteBuffer mapAsset(AssetManager assets, String name) throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = assets.openFd(name);
+        } catch (FileNotFoundException x) {
+            // compressed assets can't be mapped, so read the whole thing in instead
+            InputStream in = assets.open(name);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(in.available());
+                byte[] buf = new byte[16384];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+                return ByteBuffer.wrap(out.toByteArray());
+            } finally {
+                in.close();
+            }
+        }
+        FileInputStream in = fd.createInputStream();
+        try {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        } finally {
+            in.close();
+        }
+    }
+
+    private void readWordList(AssetManager assets) {
+        List<String[]> rows = new ArrayList<>();
         InputStream db = null;
         try {
-            db = context.getAssets().open("db/nzsl.dat");
+            db = assets.open(WORD_LIST);
             BufferedReader f = new BufferedReader(new InputStreamReader(db));
             while (true) {
                 String s = f.readLine();
                 if (s == null) {
                     break;
                 }
-                String[] a = s.split("\t");
-                words.add(new DictItem(a[0], a[1], a[2], a[3], a[4], a[5], a[6]));
+                rows.add(s.split("\t"));
             }
         } catch (IOException x) {
             Log.d("dictionary", "exception reading from word list " + x.getMessage());
@@ -148,22 +298,97 @@ public class Dictionary {
                 }
             }
         }
-        Collections.sort(words, new Comparator() {
-            public int compare(Object o1, Object o2) {
-                DictItem d1 = (DictItem) o1;
-                DictItem d2 = (DictItem) o2;
-                String s1 = skip_parens(d1.gloss);
-                String s2 = skip_parens(d2.gloss);
+        // The compiled word list is sorted the same way when it is built.
+        Collections.sort(rows, new Comparator<String[]>() {
+            public int compare(String[] a1, String[] a2) {
+                String s1 = skip_parens(a1[0]);
+                String s2 = skip_parens(a2[0]);
                 return s1.compareToIgnoreCase(s2);
             }
         });
+        WordStore.Builder builder = new WordStore.Builder(rows.size());
+        for (String[] a : rows) {
+            builder.add(a[0], a[1], a[2], a[3], a[4], a[5], a[6]);
+        }
+        store = builder.build();
+    }
+
+    private void buildSearchFields() {
+        int n = words.size();
+        searchGloss = new String[n];
+        searchMinor = new String[n];
+        searchMaori = new String[n];
+        for (int i = 0; i < n; i++) {
+            searchGloss[i] = normaliseShared(store.gloss[i]);
+            searchMinor[i] = normaliseShared(store.minor[i]);
+            searchMaori[i] = normaliseShared(store.maori[i]);
+        }
+        prefixIndex = new PrefixIndex(searchGloss, searchMaori);
+        primaryIndex = new TrigramIndex(searchGloss, searchMaori);
+        secondaryIndex = new TrigramIndex(searchMinor);
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return store.image[a].compareTo(store.image[b]);
+            }
+        });
+        imageRank = new int[n];
+        byImageRank = new int[n];
+        for (int r = 0; r < n; r++) {
+            byImageRank[r] = order[r];
+            imageRank[order[r]] = r;
+        }
+    }
+
+    private void buildFilterIndexes() {
+        handshapeWords = newBitSets(store.handshapeCount());
+        locationWords = newBitSets(store.locationCount());
+        for (int i = 0; i < store.size(); i++) {
+            handshapeWords[store.handshape[i] & 0xff].set(i);
+            locationWords[store.location[i] & 0xff].set(i);
+        }
+    }
+
+    private BitSet[] newBitSets(int count) {
+        BitSet[] sets = new BitSet[count];
+        for (int c = 0; c < count; c++) {
+            sets[c] = new BitSet(store.size());
+        }
+        return sets;
     }
 
     public List<DictItem> getWords() {
         return words;
     }
 
-    private static String normalise(String s) {
+    /**
+     * Timings and result counts of the searches run on this dictionary.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Return the word with the given id, as found in {@link DictItem#id}.
+     */
+    public DictItem getWord(int id) {
+        return words.get(id);
+    }
+
+    /**
+     * Normalise a dictionary string, returning the string itself rather than a copy when it is
+     * already normalised, as most glosses are.
+     */
+    private static String normaliseShared(String s) {
+        String n = normalise(s);
+        return n.equals(s) ? s : n;
+    }
+
+    static String normalise(String s) {
         s = Normalizer.normalize(s, Normalizer.Form.NFD);
         StringBuilder r = new StringBuilder(s.length());
         int len = s.length();
@@ -177,56 +402,316 @@ public class Dictionary {
     }
 
     public ArrayList<DictItem> getWords(String target) {
-        // Create a sorted set for each type of match. This provides "buckets" to place results
-        // in. Because it is a sorted set, uniqueness is guaranteed, and results should also be
-        // naturally ordered.
-        SortedSet<DictItem> exactPrimaryMatches = new TreeSet<>();
-        SortedSet<DictItem> startsWithPrimaryMatches = new TreeSet<>();
-        SortedSet<DictItem> containsPrimaryMatches = new TreeSet<>();
-        SortedSet<DictItem> exactSecondaryMatches = new TreeSet<>();
-        SortedSet<DictItem> containsSecondaryMatches = new TreeSet<>();
-
-        String term = normalise(target);
-        for (DictItem d : words) {
-            String gloss = normalise(d.gloss);
-            String minor = normalise(d.minor);
-            String maori = normalise(d.maori);
-
-            if (gloss.equals(term) || maori.equals(term)) exactPrimaryMatches.add(d);
-            if (gloss.startsWith(term) || maori.startsWith(term)) startsWithPrimaryMatches.add(d);
-            else if (gloss.contains(term) || maori.contains(term)) containsPrimaryMatches.add(d);
-            else if (minor.equals(term)) exactSecondaryMatches.add(d);
-            else if (minor.contains(term)) containsSecondaryMatches.add(d);
-        }
-
-        // Create an ArrayList of the size of all the results, and add each of the sets to it.
-        // This returns a data structure ordered first by the priority of the result type, then
-        // natural ordering within each set, e.g.:
-        // Given: [exact: [e1, e2, e3], contains: [c1, c2, c2], exactSecondary: [es1, es2, es3]
-        // Then: results = [e1, e2, e3, c1, c2, c3, es1, es2, es3]
-        int resultCount = exactPrimaryMatches.size() +
-                startsWithPrimaryMatches.size() +
-                containsPrimaryMatches.size() +
-                exactSecondaryMatches.size() +
-                containsSecondaryMatches.size();
-
-        LinkedHashSet<DictItem> results = new LinkedHashSet<>(resultCount);
-        results.addAll(exactPrimaryMatches);
-        results.addAll(startsWithPrimaryMatches);
-        results.addAll(containsPrimaryMatches);
-        results.addAll(exactSecondaryMatches);
-        results.addAll(containsSecondaryMatches);
-
-        return new ArrayList<>(results);
+        return search(normalise(target), null).page(Long.MAX_VALUE);
     }
 
-    public List<DictItem> getWordsByHandshape(String handshape, String location) {
-        List<DictItem> r = new ArrayList<DictItem>(words.size());
-        for (DictItem d : words) {
-            if ((handshape == null || handshape.length() == 0 || d.handshape.equals(handshape))
-                    && (location == null || location.length() == 0 || d.location.equals(location))) {
-                r.add(d);
+    /**
+     * Start a keyword search whose results are worked out a page at a time as they are asked
+     * for, so showing the first few results doesn't wait for the rest.
+     */
+    public SearchCursor getWordsCursor(String target) {
+        return search(normalise(target), null);
+    }
+
+    /**
+     * Search for a normalised term. If within is not null, only the words at those sorted
+     * indexes are considered, which must include every word that can match the term.
+     *
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    SearchCursor search(String term, int[] within) {
+        return new SearchCursor(term, within);
+    }
+
+    /**
+     * The results of a keyword search, read a page at a time.
+     *
+     * Each match is placed in a "bucket" for its type of match. The results are ordered first
+     * by bucket, then by image name within each bucket, e.g.:
+     * Given: [exact: [e1, e2, e3], contains: [c1, c2, c2], exactSecondary: [es1, es2, es3]
+     * Then: results = [e1, e2, e3, c1, c2, c3, es1, es2, es3]
+     * A word that is both an exact and a starts with match is only placed in the exact bucket.
+     * When only a few words match, words with a term a small number of edits away from the
+     * search term are added after all the others.
+     *
+     * Exact and starts with matches come from the prefix index when the cursor is created. The
+     * remaining candidates are checked in image name order, so each bucket fills in the order
+     * it is shown. Once the first bucket still being filled holds enough words for the page
+     * asked for, those words can't be displaced by any word not yet checked, and checking
+     * stops until the next page is asked for. A page of a broad search therefore costs about
+     * the same however many words it matches.
+     *
+     * The methods may be called from any thread. A page that is cancelled part way through
+     * can be asked for again, and carries on where it stopped.
+     */
+    public class SearchCursor {
+        private final String term;
+        private final ResultBuilder results = new ResultBuilder(imageRank, byImageRank);
+        private final byte[] prefixMatch;
+        // The image ranks of the words left to check, in order, or null to check every word.
+        private final int[] candidateRanks;
+        private final int candidateCount;
+        private int checked;
+        private int[] matched = new int[16];
+        private int matchCount;
+        private boolean complete;
+        private int returned;
+        // Time spent creating the cursor, counted as part of reading the first page.
+        private long createNanos;
+        private boolean pageRead;
+        private long fuzzyNanos;
+
+        SearchCursor(String term, int[] within) {
+            long start = System.nanoTime();
+            this.term = term;
+            prefixMatch = new byte[words.size()];
+            // Exact and starts with matches on the gloss or maori fields come straight from the
+            // prefix index. Those words are remembered so they are not matched again.
+            for (int p = prefixIndex.first(term); prefixIndex.matches(p, term); p++) {
+                checkCancelled(p);
+                int id = prefixIndex.id(p);
+                if (prefixMatch[id] == 0) addMatched(id);
+                if (prefixIndex.isExact(p, term)) {
+                    prefixMatch[id] = EXACT_PREFIX_MATCH;
+                } else if (prefixMatch[id] == 0) {
+                    prefixMatch[id] = STARTS_WITH_PREFIX_MATCH;
+                }
+            }
+            for (int m = 0; m < matchCount; m++) {
+                int id = matched[m];
+                results.add(prefixMatch[id] == EXACT_PREFIX_MATCH ? ResultBuilder.EXACT_PRIMARY : ResultBuilder.STARTS_WITH_PRIMARY, id);
             }
+            results.sort(ResultBuilder.EXACT_PRIMARY);
+            results.sort(ResultBuilder.STARTS_WITH_PRIMARY);
+            stats.recordPhase(SearchStats.PHASE_PREFIX, System.nanoTime() - start);
+
+            // Every other match contains the term in at least one field, so only words listed
+            // in the trigram indexes need to be checked. Short terms can't be looked up, and
+            // every word is checked instead, unless the caller already knows which words can
+            // match.
+            int[] candidates = TrigramIndex.union(primaryIndex.candidates(term), secondaryIndex.candidates(term));
+            candidates = TrigramIndex.intersection(candidates, within);
+
+            if (candidates != null) {
+                candidateRanks = new int[candidates.length];
+                for (int c = 0; c < candidates.length; c++) {
+                    candidateRanks[c] = imageRank[candidates[c]];
+                }
+                Arrays.sort(candidateRanks);
+                candidateCount = candidateRanks.length;
+            } else {
+                candidateRanks = null;
+                candidateCount = words.size();
+            }
+            if (candidateCount == 0) finish();
+            createNanos = System.nanoTime() - start;
+        }
+
+        /**
+         * Return up to the next count results, fewer only when there are no more.
+         *
+         * @throws CancellationException if the thread is interrupted while checking words
+         */
+        public synchronized List<DictItem> next(int count) {
+            return page((long) returned + count);
+        }
+
+        /**
+         * Return all the results not yet returned.
+         */
+        public synchronized List<DictItem> rest() {
+            return page(Long.MAX_VALUE);
+        }
+
+        /**
+         * Whether {@link #next} might return more results.
+         */
+        public synchronized boolean hasMore() {
+            return !complete || returned < results.size();
+        }
+
+        /**
+         * The indexes, in ascending order, of every word that can match a term extending this
+         * one: the words matched so far and the candidates not checked yet. Returns null if
+         * that's still every word. Near misses aren't included, as they don't narrow down later
+         * searches.
+         */
+        synchronized int[] candidateIds() {
+            int[] ids = Arrays.copyOf(matched, matchCount);
+            Arrays.sort(ids);
+            if (complete) return ids;
+            if (candidateRanks == null) return null;
+            int[] unchecked = new int[candidateCount - checked];
+            for (int c = checked; c < candidateCount; c++) {
+                unchecked[c - checked] = byImageRank[candidateRanks[c]];
+            }
+            Arrays.sort(unchecked);
+            return TrigramIndex.union(ids, unchecked);
+        }
+
+        private synchronized ArrayList<DictItem> page(long end) {
+            long start = System.nanoTime();
+            long fuzzyBefore = fuzzyNanos;
+            int checkedBefore = checked;
+            while (!complete && settled() < end) {
+                if (checked < candidateCount) {
+                    check();
+                } else {
+                    // only reached if looking for near misses was cancelled
+                    finish();
+                }
+            }
+            if (checked > checkedBefore) {
+                stats.recordPhase(SearchStats.PHASE_SCAN, System.nanoTime() - start - (fuzzyNanos - fuzzyBefore));
+            }
+            int last = (int) Math.min(end, settled());
+            ArrayList<DictItem> page = new ArrayList<>(Math.max(last - returned, 0));
+            for (int p = returned; p < last; p++) {
+                page.add(words.get(results.id(p)));
+            }
+            if (pageRead) {
+                stats.recordLatency(SearchStats.KEYWORD_MORE, System.nanoTime() - start);
+            } else {
+                stats.recordLatency(SearchStats.KEYWORD, System.nanoTime() - start + createNanos);
+                pageRead = true;
+            }
+            returned = Math.max(returned, last);
+            return page;
+        }
+
+        /**
+         * The number of results whose place is already certain.
+         */
+        private int settled() {
+            if (complete) return results.size();
+            int n = 0;
+            // The buckets before this one are complete, and this one is complete as far as it
+            // goes.
+            for (int b = 0; b <= ResultBuilder.CONTAINS_PRIMARY; b++) n += results.size(b);
+            return n;
+        }
+
+        private void check() {
+            checkCancelled(checked);
+            int i = byImageRank[candidateRanks != null ? candidateRanks[checked] : checked];
+            checked++;
+            if (prefixMatch[i] == 0) {
+                String gloss = searchGloss[i];
+                String minor = searchMinor[i];
+                String maori = searchMaori[i];
+
+                int bucket = -1;
+                if (gloss.contains(term) || maori.contains(term)) bucket = ResultBuilder.CONTAINS_PRIMARY;
+                else if (minor.equals(term)) bucket = ResultBuilder.EXACT_SECONDARY;
+                else if (minor.contains(term)) bucket = ResultBuilder.CONTAINS_SECONDARY;
+                if (bucket >= 0) {
+                    results.add(bucket, i);
+                    addMatched(i);
+                }
+            }
+            if (checked == candidateCount) finish();
+        }
+
+        private void addMatched(int id) {
+            if (matchCount == matched.length) matched = Arrays.copyOf(matched, matchCount * 2);
+            matched[matchCount++] = id;
+        }
+
+        private void finish() {
+            // Near misses are added all at once, so if the lookup is cancelled the cursor can
+            // finish again later.
+            if (matchCount < FUZZY_FEW_RESULTS && term.length() >= FUZZY_MIN_LENGTH) {
+                long start = System.nanoTime();
+                addFuzzyMatches();
+                fuzzyNanos += System.nanoTime() - start;
+                stats.recordPhase(SearchStats.PHASE_FUZZY, System.nanoTime() - start);
+            }
+            complete = true;
+            stats.recordResults(SearchStats.KEYWORD, results.size());
+            stats.recordBuckets(results);
+        }
+
+        private void addFuzzyMatches() {
+            int maxDistance = term.length() >= FUZZY_TWO_EDIT_LENGTH ? 2 : 1;
+            FuzzyIndex index = fuzzyIndex;
+            if (index == null) return;
+            int[][] found = index.lookup(term, maxDistance, FUZZY_MAX_VISITS);
+            BitSet seen = new BitSet(words.size());
+            for (int m = 0; m < matchCount; m++) {
+                seen.set(matched[m]);
+            }
+            // A term no edits away is contained in the word's text, so it has already matched.
+            for (int d = 1; d <= maxDistance; d++) {
+                int bucket = d == 1 ? ResultBuilder.FUZZY_CLOSE : ResultBuilder.FUZZY_FAR;
+                for (int id : found[d]) {
+                    if (!seen.get(id)) {
+                        seen.set(id);
+                        results.add(bucket, id);
+                    }
+                }
+                results.sort(bucket);
+            }
+        }
+    }
+
+    /**
+     * Build the index used to find near misses of search terms, if it hasn't been already.
+     * This takes a few hundred milliseconds, so should be called on a background thread once
+     * the dictionary has loaded. Until it has been, searches don't include near misses.
+     */
+    public synchronized void buildFuzzyIndex() {
+        if (fuzzyIndex == null) {
+            fuzzyIndex = new FuzzyIndex(searchGloss, searchMaori, searchMinor);
+        }
+    }
+
+    /**
+     * Throw CancellationException if the thread has been interrupted. Loops call this on each
+     * iteration, and it only looks every 256 of them.
+     */
+    static void checkCancelled(int iteration) {
+        if ((iteration & 0xff) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    public List<DictItem> getWordsByHandshape(String handshape, String location) {
+        long start = System.nanoTime();
+        List<DictItem> r = filterByHandshape(handshape, location);
+        stats.recordLatency(SearchStats.HANDSHAPE, System.nanoTime() - start);
+        stats.recordResults(SearchStats.HANDSHAPE, r.size());
+        return r;
+    }
+
+    private List<DictItem> filterByHandshape(String handshape, String location) {
+        BitSet hs = null;
+        BitSet ls = null;
+        if (handshape != null && handshape.length() != 0) {
+            int code = store.handshapeCode(handshape);
+            if (code < 0) return new ArrayList<>();
+            hs = handshapeWords[code];
+        }
+        if (location != null && location.length() != 0) {
+            int code = store.locationCode(location);
+            if (code < 0) return new ArrayList<>();
+            ls = locationWords[code];
+        }
+        if (hs == null && ls == null) {
+            return new ArrayList<>(words);
+        }
+
+        BitSet matches;
+        if (hs == null) {
+            matches = ls;
+        } else if (ls == null) {
+            matches = hs;
+        } else {
+            matches = (BitSet) hs.clone();
+            matches.and(ls);
+        }
+        List<DictItem> r = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            r.add(words.get(i));
         }
         return r;
     }
@@ -310,7 +795,7 @@ public class Dictionary {
         try {
             byte[] digest = MessageDigest.getInstance("SHA-1").digest(buf.getBytes());
             int r = (((digest[0] & 0xff) << 8) | (digest[1] & 0xff)) % words.size();
-            while (taboo.contains(words.get(r).gloss)) {
+            while (taboo.contains(store.gloss[r])) {
                 r += 1;
             }
             return words.get(r);
@@ -0,0 +1,142 @@
+package com.hewgill.android.nzsldict;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the compiled binary dictionary generated from the word list at build time by the
+ * compileDictionary Gradle task (see DictionaryCompiler in buildSrc, which documents the
+ * layout).
+ *
+ * The file is read in place from a mapped or fully read buffer. Each distinct string is only
+ * decoded the first time an entry refers to it, and is then shared by every entry using it.
+ * The fields searching and sorting need are decoded when the store is read, but the video
+ * URLs, which make up most of the string data, are left in the buffer until a word is shown.
+ */
+class DictionaryFile {
+    static final int MAGIC = 0x4E5A534C;
+    static final int VERSION = 2;
+    static final int FIELDS = 7;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int VIDEO = 4;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int stringCount;
+    private final int prefixCount;
+    private final int indexSize;
+    private final int offsetsStart;
+    private final int recordsStart;
+    private final int stringsStart;
+    private final String[] strings;
+
+    DictionaryFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a compiled dictionary");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported compiled dictionary version " + buffer.getInt(4));
+        }
+        entryCount = buffer.getInt(8);
+        stringCount = buffer.getInt(12);
+        prefixCount = buffer.getInt(16);
+        indexSize = buffer.getInt(20);
+        if (entryCount < 0 || stringCount < 0 || prefixCount < 0 || prefixCount > stringCount
+                || (indexSize != 2 && indexSize != 4)) {
+            throw new IOException("compiled dictionary header is invalid");
+        }
+        offsetsStart = HEADER_SIZE;
+        recordsStart = offsetsStart + (stringCount + 1) * 4;
+        stringsStart = recordsStart + entryCount * FIELDS * indexSize;
+        if (stringsStart > buffer.capacity()
+                || stringsStart + buffer.getInt(offsetsStart + stringCount * 4) != buffer.capacity()) {
+            throw new IOException("compiled dictionary is truncated");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Read every entry into a word store. Video URLs are read from this file when they're
+     * first asked for.
+     */
+    WordStore store() throws IOException {
+        WordStore.Builder builder = new WordStore.Builder(entryCount);
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (index(entry, VIDEO) >= stringCount) {
+                throw new IOException("string index " + index(entry, VIDEO) + " out of range");
+            }
+            builder.add(
+                    string(index(entry, 0)),
+                    string(index(entry, 1)),
+                    string(index(entry, 2)),
+                    string(index(entry, 3)),
+                    null,
+                    string(index(entry, 5)),
+                    string(index(entry, 6)));
+        }
+        return builder.videos(new WordStore.Column() {
+            public String get(int row) {
+                try {
+                    return string(index(row, VIDEO));
+                } catch (IOException x) {
+                    throw new IllegalStateException("can't read the video for word " + row, x);
+                }
+            }
+        }).build();
+    }
+
+    /**
+     * Read a single entry, as a word on its own.
+     */
+    Dictionary.DictItem item(int entry) throws IOException {
+        if (entry < 0 || entry >= entryCount) {
+            throw new IOException("entry " + entry + " out of range");
+        }
+        WordStore store = WordStore.of(
+                string(index(entry, 0)),
+                string(index(entry, 1)),
+                string(index(entry, 2)),
+                string(index(entry, 3)),
+                string(index(entry, 4)),
+                string(index(entry, 5)),
+                string(index(entry, 6)));
+        return new Dictionary.DictItem(store, 0, entry);
+    }
+
+    private int index(int entry, int field) {
+        int record = recordsStart + (entry * FIELDS + field) * indexSize;
+        return indexSize == 2 ? buffer.getShort(record) & 0xffff : buffer.getInt(record);
+    }
+
+    private String string(int index) throws IOException {
+        if (index < 0 || index >= stringCount) {
+            throw new IOException("string index " + index + " out of range");
+        }
+        String s = strings[index];
+        if (s == null) {
+            int start = buffer.getInt(offsetsStart + index * 4);
+            int end = buffer.getInt(offsetsStart + index * 4 + 4);
+            if (start < 0 || end <= start || stringsStart + end > buffer.capacity()) {
+                throw new IOException("string " + index + " is out of range");
+            }
+            int prefix = buffer.get(stringsStart + start) & 0xff;
+            if (prefix > (index < prefixCount ? 0 : prefixCount)) {
+                throw new IOException("string " + index + " has an invalid prefix " + prefix);
+            }
+            byte[] bytes = new byte[end - start - 1];
+            ByteBuffer b = buffer.duplicate();
+            b.position(stringsStart + start + 1);
+            b.get(bytes);
+            s = new String(bytes, UTF8);
+            if (prefix > 0) {
+                s = string(prefix - 1) + s;
+            }
+            strings[index] = s;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,189 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds words whose text is within a small edit distance of a search term, so that a term
+ * with a typo still finds what was meant.
+ *
+ * The terms looked up are each distinct word in the normalised fields, and each whole field.
+ * They are kept in a BK-tree: every child of a term is filed under its edit distance from that
+ * term, and by the triangle inequality a lookup only has to visit the children whose distance
+ * is within the maximum of the term's own distance from the search term. This visits a small
+ * part of the tree for the short distances used here.
+ *
+ * The tree is stored in arrays, with each term's children as a linked list of siblings.
+ */
+class FuzzyIndex {
+    private static final int[] EMPTY = new int[0];
+    // Terms too short to be a typo of a term long enough to be looked up aren't indexed.
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private final String[] terms;
+    private final int[][] postings;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] distance;
+    private final int maxTermLength;
+
+    /**
+     * Build an index over one or more fields. Each array must be indexed by word.
+     */
+    FuzzyIndex(String[]... fields) {
+        Map<String, List<Integer>> lists = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        int n = fields[0].length;
+        for (int id = 0; id < n; id++) {
+            for (String[] field : fields) {
+                String s = field[id];
+                add(lists, order, s, id);
+                int start = -1;
+                for (int i = 0; i <= s.length(); i++) {
+                    boolean letter = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+                    if (letter && start < 0) {
+                        start = i;
+                    } else if (!letter && start >= 0) {
+                        if (start > 0 || i < s.length()) add(lists, order, s.substring(start, i), id);
+                        start = -1;
+                    }
+                }
+            }
+        }
+
+        int count = order.size();
+        terms = order.toArray(new String[count]);
+        int longest = 0;
+        for (String term : terms) longest = Math.max(longest, term.length());
+        maxTermLength = longest;
+        int[] row = new int[longest + 1];
+        postings = new int[count][];
+        firstChild = new int[count];
+        nextSibling = new int[count];
+        distance = new int[count];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        for (int t = 0; t < count; t++) {
+            List<Integer> ids = lists.get(terms[t]);
+            int[] p = new int[ids.size()];
+            for (int i = 0; i < p.length; i++) p[i] = ids.get(i);
+            postings[t] = p;
+            if (t > 0) insert(t, row);
+        }
+    }
+
+    private static void add(Map<String, List<Integer>> lists, List<String> order, String term, int id) {
+        if (term.length() < MIN_TERM_LENGTH) return;
+        List<Integer> ids = lists.get(term);
+        if (ids == null) {
+            ids = new ArrayList<>(1);
+            lists.put(term, ids);
+            order.add(term);
+        }
+        // ids are added in ascending order, so a repeat can only be the last entry
+        if (ids.isEmpty() || ids.get(ids.size() - 1) != id) ids.add(id);
+    }
+
+    private void insert(int t, int[] row) {
+        int node = 0;
+        while (true) {
+            int d = editDistance(terms[t], terms[node], row);
+            int child = firstChild[node];
+            while (child >= 0 && distance[child] != d) child = nextSibling[child];
+            if (child < 0) {
+                distance[t] = d;
+                nextSibling[t] = firstChild[node];
+                firstChild[node] = t;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Look up the words with a term within maxDistance edits of the normalised search term.
+     * The result is indexed by distance, and each entry lists the words with a term at that
+     * distance, which may include the same word more than once. The lookup stops early with
+     * what it has found after comparing maxVisits terms, which always visits the same terms in
+     * the same order, so a search finds the same words however fast it runs.
+     *
+     * @throws java.util.concurrent.CancellationException if the thread is interrupted during
+     * the lookup
+     */
+    int[][] lookup(String term, int maxDistance, int maxVisits) {
+        List<List<int[]>> found = new ArrayList<>(maxDistance + 1);
+        for (int d = 0; d <= maxDistance; d++) found.add(new ArrayList<int[]>());
+
+        if (terms.length > 0) {
+            // Every comparison shares one row, big enough for the shorter of any two terms.
+            int[] row = new int[Math.min(term.length(), maxTermLength) + 1];
+            int[] stack = new int[16];
+            int top = 0;
+            stack[top++] = 0;
+            int visited = 0;
+            while (top > 0) {
+                if (++visited > maxVisits) break;
+                Dictionary.checkCancelled(visited);
+                int node = stack[--top];
+                int d = editDistance(term, terms[node], row);
+                if (d <= maxDistance) found.get(d).add(postings[node]);
+                for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                    if (Math.abs(distance[child] - d) <= maxDistance) {
+                        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+
+        int[][] result = new int[maxDistance + 1][];
+        for (int d = 0; d <= maxDistance; d++) {
+            int size = 0;
+            for (int[] p : found.get(d)) size += p.length;
+            int[] ids = size == 0 ? EMPTY : new int[size];
+            int k = 0;
+            for (int[] p : found.get(d)) {
+                System.arraycopy(p, 0, ids, k, p.length);
+                k += p.length;
+            }
+            result[d] = ids;
+        }
+        return result;
+    }
+
+    /**
+     * The Levenshtein distance between two strings: the number of single character
+     * insertions, deletions and substitutions needed to turn one into the other.
+     */
+    static int editDistance(String a, String b) {
+        return editDistance(a, b, new int[Math.min(a.length(), b.length()) + 1]);
+    }
+
+    /**
+     * The Levenshtein distance, working in row, which must be longer than the shorter string.
+     */
+    private static int editDistance(String a, String b, int[] row) {
+        if (a.length() < b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        int m = b.length();
+        for (int j = 0; j <= m; j++) row[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            char c = a.charAt(i - 1);
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= m; j++) {
+                int above = row[j];
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, above + 1), diagonal + cost);
+                diagonal = above;
+            }
+        }
+        return row[m];
+    }
+}
@@ -0,0 +1,145 @@
+package com.hewgill.android.nzsldict;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The handshape and location icons, packed into one image when the app is built (see
+ * IconAtlasPacker in buildSrc). Decoding the atlas once and drawing each gallery cell from it
+ * is much cheaper than decoding every icon's drawable, which are full size and scaled up
+ * again for the screen density.
+ */
+public class IconAtlas {
+    private static final String IMAGE = "images/icons/atlas.png";
+    private static final String INDEX = "images/icons/atlas.txt";
+
+    private final Bitmap mBitmap;
+    private final Map<String, Rect> mIcons;
+
+    private IconAtlas(Bitmap bitmap, Map<String, Rect> icons) {
+        mBitmap = bitmap;
+        mIcons = icons;
+    }
+
+    /**
+     * Read the atlas from the assets, returning null if it can't be.
+     */
+    public static IconAtlas load(AssetManager assets) {
+        long begin = StartupTimeline.begin("decode icon atlas");
+        try {
+            Map<String, Rect> icons = readIndex(assets);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            // The icons have no transparency, so this halves the memory used without losing
+            // anything noticeable.
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            InputStream in = assets.open(IMAGE);
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            } finally {
+                in.close();
+            }
+            if (bitmap == null) {
+                throw new IOException("can't decode " + IMAGE);
+            }
+            return new IconAtlas(bitmap, icons);
+        } catch (IOException e) {
+            Log.d("images", "failed to load icon atlas: " + e.getMessage());
+            return null;
+        } finally {
+            StartupTimeline.end("decode icon atlas", begin);
+        }
+    }
+
+    private static Map<String, Rect> readIndex(AssetManager assets) throws IOException {
+        Map<String, Rect> icons = new HashMap<>();
+        BufferedReader f = new BufferedReader(new InputStreamReader(assets.open(INDEX), "UTF-8"));
+        try {
+            while (true) {
+                String s = f.readLine();
+                if (s == null) {
+                    break;
+                }
+                String[] a = s.split("\t");
+                if (a.length != 5) {
+                    throw new IOException(INDEX + ": bad line: " + s);
+                }
+                int x = Integer.parseInt(a[1]);
+                int y = Integer.parseInt(a[2]);
+                icons.put(a[0], new Rect(x, y, x + Integer.parseInt(a[3]), y + Integer.parseInt(a[4])));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(INDEX + ": " + e.getMessage());
+        } finally {
+            f.close();
+        }
+        return icons;
+    }
+
+    /**
+     * Return a drawable for the icon with the given drawable resource name, or null if it
+     * isn't in the atlas. Each call returns a new drawable, all sharing the one bitmap.
+     */
+    public Drawable getIcon(String name) {
+        Rect source = mIcons.get(name);
+        return source != null ? new Icon(mBitmap, source) : null;
+    }
+
+    private static class Icon extends Drawable {
+        private final Bitmap mBitmap;
+        private final Rect mSource;
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        Icon(Bitmap bitmap, Rect source) {
+            mBitmap = bitmap;
+            mSource = source;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.drawBitmap(mBitmap, mSource, getBounds(), mPaint);
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mSource.width();
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mSource.height();
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return mPaint.getAlpha() == 255 ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.hewgill.android.nzsldict;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the parts of setting up a screen that aren't needed for its first frame later, when
+ * the main thread has nothing else to do, so they don't delay the screen appearing or the user
+ * starting to type.
+ *
+ * Tasks run in the order they were added, one each time the main thread becomes idle, so a
+ * key press or frame in between isn't held up by all of them at once. A task that is needed
+ * sooner, such as one setting up a view the user has just asked for, can be run straight
+ * away with {@link #runNow}. Each task runs at most once.
+ *
+ * All methods must be called on the main thread.
+ */
+public class IdleInitializer {
+    // Posted to make the main thread idle again.
+    private static final Runnable NOTHING = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private final Map<String, Runnable> mPending = new LinkedHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mStarted;
+    private boolean mWaiting;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        public boolean queueIdle() {
+            if (!mPending.isEmpty()) {
+                runNow(mPending.keySet().iterator().next());
+            }
+            if (mPending.isEmpty()) {
+                mWaiting = false;
+                return false;
+            }
+            // Idle handlers only run again once another message has been handled.
+            mHandler.post(NOTHING);
+            return true;
+        }
+    };
+
+    /**
+     * Add a task to be run once the main thread is idle, after {@link #start} is called.
+     * Tasks added after that run at the next idle time.
+     */
+    public void add(String name, Runnable task) {
+        mPending.put(name, task);
+        if (mStarted) waitForIdle();
+    }
+
+    /**
+     * Start running tasks when the main thread is idle. This is usually called once the
+     * screen has drawn its first frame.
+     */
+    public void start() {
+        if (mStarted) return;
+        mStarted = true;
+        if (!mPending.isEmpty()) waitForIdle();
+    }
+
+    private void waitForIdle() {
+        if (mWaiting) return;
+        mWaiting = true;
+        Looper.myQueue().addIdleHandler(mIdleHandler);
+    }
+
+    /**
+     * Run the task now if it hasn't already run.
+     */
+    public void runNow(String name) {
+        Runnable task = mPending.remove(name);
+        if (task == null) return;
+        long begin = StartupTimeline.begin(name);
+        task.run();
+        StartupTimeline.end(name, begin);
+    }
+
+    /**
+     * Drop the tasks that haven't run, for example when the activity is destroyed.
+     */
+    public void cancel() {
+        mPending.clear();
+        mWaiting = false;
+        Looper.myQueue().removeIdleHandler(mIdleHandler);
+    }
+}
@@ -0,0 +1,201 @@
+package com.hewgill.android.nzsldict;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads sign illustrations from the assets into image views without blocking the main thread.
+ *
+ * Images are decoded on background threads, downsampled to roughly the size of the view they
+ * are shown in, and kept in a memory cache sized from the available heap. When a view is
+ * rebound to another image (such as a recycled list row) its previous request is cancelled.
+ */
+public class ImageLoader {
+    private final AssetManager mAssets;
+    private final LruCache<String, Bitmap> mCache;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "image-loader");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    });
+
+    public ImageLoader(Context context) {
+        mAssets = context.getApplicationContext().getAssets();
+        // Use an eighth of the heap for decoded images, measured in kilobytes.
+        int cacheSize = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        mCache = new LruCache<String, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight() / 1024;
+            }
+        };
+    }
+
+    private class Request implements Runnable {
+        final String path;
+        final String key;
+        final int width;
+        final int height;
+        final ImageView view;
+        Future<?> future;
+
+        Request(String path, int width, int height, ImageView view) {
+            this.path = path;
+            this.key = cacheKey(path, width, height);
+            this.width = width;
+            this.height = height;
+            this.view = view;
+        }
+
+        public void run() {
+            final Bitmap bitmap = decode(path, width, height);
+            if (bitmap == null || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            mHandler.post(new Runnable() {
+                public void run() {
+                    mCache.put(key, bitmap);
+                    if (view != null && view.getTag(R.id.image_loader_request) == Request.this) {
+                        view.setTag(R.id.image_loader_request, null);
+                        view.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Show the asset at the path in the view, decoded to fit the view's layout size. If the
+     * view's size depends on its layout and it hasn't been laid out yet, the image is loaded
+     * once it has, so it is decoded (and cached) at the size it is shown at. Must be called on
+     * the main thread.
+     */
+    public void load(final String path, ImageView view) {
+        cancel(view);
+        if (path == null || path.isEmpty()) {
+            view.setImageDrawable(null);
+            return;
+        }
+        ViewGroup.LayoutParams lp = view.getLayoutParams();
+        int width = lp != null && lp.width > 0 ? lp.width : view.getWidth();
+        int height = lp != null && lp.height > 0 ? lp.height : view.getHeight();
+        if (width <= 0 || height <= 0) {
+            view.setImageDrawable(null);
+            final Request waiting = new Request(path, 0, 0, view);
+            view.setTag(R.id.image_loader_request, waiting);
+            view.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                public void onLayoutChange(final View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if (v.getTag(R.id.image_loader_request) != waiting) {
+                        v.removeOnLayoutChangeListener(this);
+                        return;
+                    }
+                    if (v.getWidth() <= 0 || v.getHeight() <= 0) return;
+                    v.removeOnLayoutChangeListener(this);
+                    // Setting the image can change the layout, so wait until this one is done.
+                    v.post(new Runnable() {
+                        public void run() {
+                            if (v.getTag(R.id.image_loader_request) == waiting) load(path, (ImageView) v);
+                        }
+                    });
+                }
+            });
+            return;
+        }
+
+        Bitmap bitmap = mCache.get(cacheKey(path, width, height));
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+        Request request = new Request(path, width, height, view);
+        view.setTag(R.id.image_loader_request, request);
+        request.future = mExecutor.submit(request);
+    }
+
+    /**
+     * Decode the asset into the cache ahead of it being shown at the given size.
+     */
+    public void preload(String path, int width, int height) {
+        if (path == null || path.isEmpty() || mCache.get(cacheKey(path, width, height)) != null) {
+            return;
+        }
+        mExecutor.submit(new Request(path, width, height, null));
+    }
+
+    /**
+     * Cancel any request still loading into the view. Must be called on the main thread.
+     */
+    public void cancel(ImageView view) {
+        Request request = (Request) view.getTag(R.id.image_loader_request);
+        if (request != null) {
+            // a request waiting for the view to be laid out hasn't started
+            if (request.future != null) request.future.cancel(true);
+            view.setTag(R.id.image_loader_request, null);
+        }
+    }
+
+    private static String cacheKey(String path, int width, int height) {
+        return path + "@" + width + "x" + height;
+    }
+
+    private Bitmap decode(String path, int width, int height) {
+        long begin = StartupTimeline.begin("decode image");
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            if (width > 0 && height > 0) {
+                options.inJustDecodeBounds = true;
+                decodeStream(path, options);
+                options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+                options.inJustDecodeBounds = false;
+            }
+            return decodeStream(path, options);
+        } catch (IOException e) {
+            Log.d("images", "failed to load " + path + ": " + e.getMessage());
+            return null;
+        } finally {
+            StartupTimeline.end("decode image", begin);
+        }
+    }
+
+    private Bitmap decodeStream(String path, BitmapFactory.Options options) throws IOException {
+        InputStream in = mAssets.open(path);
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The largest power of two to divide the image size by that keeps it at least as large as
+     * the requested size.
+     */
+    static int sampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
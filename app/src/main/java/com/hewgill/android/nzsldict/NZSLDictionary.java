@@ -5,6 +5,12 @@ import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
+import android.support.v7.recyclerview.extensions.AsyncListDiffer;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -15,151 +21,261 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.webkit.WebView;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.BaseAdapter;
 import android.widget.EditText;
-import android.widget.Filter;
 import android.widget.Gallery;
 import android.widget.ImageView;
-import android.widget.ListView;
 import android.widget.TextView;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import uk.co.chrisjenx.calligraphy.CalligraphyContextWrapper;
 
 public class NZSLDictionary extends AppCompatActivity {
     private Dictionary dictionary;
+    private SearchSession searchSession;
     private EditText filterText;
     private TextWatcher filterTextWatcher;
     private View handshapeHeader;
     private View wotd;
-    private ListView mSearchResultsList;
+    private RecyclerView mSearchResultsList;
     private DictAdapter adapter;
+    private SearchScheduler searchScheduler;
+    // Reads further pages of keyword results, separately so it doesn't drop a waiting search.
+    private SearchScheduler pageScheduler;
+    private ImageLoader imageLoader;
+    private IdleInitializer idleInit;
+    private final SearchScheduler.Callback<List<Dictionary.DictItem>> searchResults = new SearchScheduler.Callback<List<Dictionary.DictItem>>() {
+        public void onResult(List<Dictionary.DictItem> words) {
+            adapter.setWords(words, null);
+        }
+    };
+    private final SearchScheduler.Callback<ResultPage> keywordResults = new SearchScheduler.Callback<ResultPage>() {
+        public void onResult(ResultPage page) {
+            adapter.setWords(page.words, page.cursor);
+            StartupTimeline.record(StartupTimeline.FIRST_SEARCH, page.requested);
+            StartupTimeline.mark(StartupTimeline.FIRST_SEARCH_RESULTS);
+        }
+    };
+    private final SearchScheduler.Callback<ResultPage> moreKeywordResults = new SearchScheduler.Callback<ResultPage>() {
+        public void onResult(ResultPage page) {
+            adapter.addWords(page.words, page.cursor);
+        }
+    };
     private String handshapeFilter;
     private String locationFilter;
     private Toolbar mToolbar;
     private View filterTextContainer;
+    // How long to wait for further typing or gallery movement before starting a search
+    private static final long KEYWORD_SEARCH_DELAY_MS = 150;
+    private static final long HANDSHAPE_SEARCH_DELAY_MS = 250;
+    // Keyword results are read this many at a time, starting with enough to fill the screen.
+    // The next page is read when the list is scrolled to within half a page of the end.
+    private static final int RESULTS_PAGE_SIZE = 30;
+    // Parts of the main screen that aren't needed for its first frame, set up once it's idle.
+    private static final String INIT_ABOUT = "load about page";
+    private static final String INIT_GALLERIES = "set up galleries";
+    private static final String INIT_WOTD_IMAGE = "word of the day image";
+
+    private final Application.DictionaryListener dictionaryListener = new Application.DictionaryListener() {
+        public void onDictionaryLoaded(Dictionary dictionary) {
+            NZSLDictionary.this.onDictionaryLoaded(dictionary);
+        }
+    };
+
+    /**
+     * A page of keyword results, and the cursor to read the rest from.
+     */
+    static class ResultPage {
+        final List<Dictionary.DictItem> words;
+        final Dictionary.SearchCursor cursor;
+        // When the page was asked for, as given by System.nanoTime().
+        final long requested;
+
+        ResultPage(List<Dictionary.DictItem> words, Dictionary.SearchCursor cursor, long requested) {
+            this.words = words;
+            this.cursor = cursor;
+            this.requested = requested;
+        }
+    }
+
+    static final DiffUtil.ItemCallback<Dictionary.DictItem> SAME_WORD = new DiffUtil.ItemCallback<Dictionary.DictItem>() {
+        @Override
+        public boolean areItemsTheSame(Dictionary.DictItem a, Dictionary.DictItem b) {
+            return a.id == b.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Dictionary.DictItem a, Dictionary.DictItem b) {
+            // Words don't change, so the same word always shows the same.
+            return true;
+        }
+    };
 
-    class DictAdapter extends BaseAdapter {
-        private int resource;
+    /**
+     * The search results, after the handshape and location header.
+     *
+     * Each new list of words is compared with the one showing on a background thread, and only
+     * the rows that differ are rebound and animated. Lists given to the adapter must not be
+     * changed afterwards.
+     */
+    class DictAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private static final int TYPE_HEADER = 0;
+        private static final int TYPE_WORD = 1;
+
+        private final int resource;
+        private final View header;
+        private final LayoutInflater inflater;
+        private final AsyncListDiffer<Dictionary.DictItem> differ;
+        // The latest list given to the adapter, which is shown once it has been compared.
         private List<Dictionary.DictItem> words;
-        private LayoutInflater inflater;
-        private Filter filter;
+        private Dictionary.SearchCursor cursor;
+        private boolean loadingMore;
 
-        public DictAdapter(Context context, int resource, List<Dictionary.DictItem> words) {
+        public DictAdapter(Context context, int resource, View header) {
             this.resource = resource;
-            this.words = words;
+            this.header = header;
             inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            differ = new AsyncListDiffer<>(new HeaderOffsetCallback(), new AsyncDifferConfig.Builder<>(SAME_WORD).build());
+            words = differ.getCurrentList();
         }
 
         @Override
-        public int getCount() {
-            return words.size();
+        public int getItemCount() {
+            return 1 + differ.getCurrentList().size();
         }
 
         @Override
+        public int getItemViewType(int position) {
+            return position == 0 ? TYPE_HEADER : TYPE_WORD;
+        }
+
+        /**
+         * Return the word at a position in the list, or null for the header.
+         */
         public Dictionary.DictItem getItem(int position) {
-            return words.get(position);
+            return position == 0 ? null : differ.getCurrentList().get(position - 1);
         }
 
-        @Override
-        public long getItemId(int position) {
-            return position;
+        /**
+         * Return the dictionary ids of the words in the list, in order.
+         */
+        public int[] getWordIds() {
+            List<Dictionary.DictItem> shown = differ.getCurrentList();
+            int[] ids = new int[shown.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = shown.get(i).id;
+            }
+            return ids;
         }
 
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            View v;
-            if (convertView == null) {
-                v = inflater.inflate(resource, parent, false);
-            } else {
-                v = convertView;
-            }
-            TextView gv = (TextView) v.findViewById(R.id.item_gloss);
-            TextView mv = (TextView) v.findViewById(R.id.item_minor);
-            TextView mtv = (TextView) v.findViewById(R.id.item_maori);
-            ImageView dv = (ImageView) v.findViewById(R.id.diagram);
-            if (position >= getCount()) {
-                Log.e("filter", "request for item " + position + " in list of size " + getCount());
-                return v;
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            if (viewType == TYPE_HEADER) {
+                // There is only one header view, so it is never recycled into another holder.
+                RecyclerView.ViewHolder holder = new RecyclerView.ViewHolder(header) {};
+                holder.setIsRecyclable(false);
+                return holder;
             }
+            return new WordHolder(inflater.inflate(resource, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            if (position == 0) return;
             Dictionary.DictItem item = getItem(position);
-            gv.setText(item.gloss);
-            mv.setText(item.minor);
-            mtv.setText(item.maori);
-
-            try {
-                InputStream ims = getAssets().open(item.imagePath());
-                Drawable d = Drawable.createFromStream(ims, null);
-                dv.setImageDrawable(d);
-            } catch (IOException e) {
-                dv.setImageDrawable(null);
-                System.out.println(e.toString());
+            WordHolder h = (WordHolder) holder;
+            h.gloss.setText(item.gloss());
+            h.minor.setText(item.minor());
+            h.maori.setText(item.maori());
+            imageLoader.load(item.imagePath(), h.diagram);
+
+            // Measured against the list being bound, which lags the latest one while it is
+            // compared.
+            int shown = differ.getCurrentList().size();
+            if (cursor != null && !loadingMore && position - 1 >= shown - RESULTS_PAGE_SIZE / 2 && cursor.hasMore()) {
+                loadingMore = true;
+                loadMoreKeywordResults(cursor);
             }
-            return v;
         }
 
-        public Filter getFilter() {
-            if (filter == null) {
-                filter = new HandshapeFilter();
-            }
-            return filter;
+        /**
+         * Show a new list of words. If the cursor isn't null, the words are the first page of
+         * its results, and the adapter adds the following pages to the list as it is scrolled.
+         */
+        public void setWords(List<Dictionary.DictItem> words, Dictionary.SearchCursor cursor) {
+            this.words = words;
+            this.cursor = cursor;
+            loadingMore = false;
+            differ.submitList(words);
         }
 
-        private class HandshapeFilter extends Filter {
-            @Override
-            protected Filter.FilterResults performFiltering(CharSequence constraint) {
-                FilterResults results = new FilterResults();
-
-                final String hf = handshapeFilter;
-                final String lf = locationFilter;
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException x) {
-                }
-                if (hf != handshapeFilter || lf != locationFilter) {
-                    // something has changed, abandon and we will get rerun
-                    return null;
-                }
+        /**
+         * Add the next page of results read from the cursor, unless the list has changed to
+         * show something else since it was asked for.
+         */
+        public void addWords(List<Dictionary.DictItem> more, Dictionary.SearchCursor from) {
+            if (from != cursor) return;
+            loadingMore = false;
+            if (more.isEmpty()) return;
+            List<Dictionary.DictItem> all = new ArrayList<>(words.size() + more.size());
+            all.addAll(words);
+            all.addAll(more);
+            words = all;
+            differ.submitList(all);
+        }
 
-                List<Dictionary.DictItem> r;
-                if (constraint == null) {
-                    r = dictionary.getWords();
-                } else {
-                    String target = constraint.toString();
-                    int i = target.indexOf('|');
-                    if (i >= 0) {
-                        String hs = target.substring(0, i);
-                        String ls = target.substring(i + 1, target.length());
-                        r = dictionary.getWordsByHandshape(hs, ls);
-                    } else {
-                        r = dictionary.getWords(target);
-                    }
-                }
-                results.values = r;
-                results.count = r.size();
-                return results;
+        /**
+         * Passes changes to the list of words on to the adapter, moved down past the header.
+         */
+        private class HeaderOffsetCallback implements ListUpdateCallback {
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position + 1, count);
             }
 
-            @Override
-            protected void publishResults(CharSequence constraint, Filter.FilterResults results) {
-                if (results == null) {
-                    return;
-                }
-                words = (List<Dictionary.DictItem>) results.values;
-                if (results.count > 0) {
-                    notifyDataSetChanged();
-                } else {
-                    notifyDataSetInvalidated();
-                }
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position + 1, count);
+            }
+
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition + 1, toPosition + 1);
             }
+
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position + 1, count, payload);
+            }
+        }
+    }
+
+    class WordHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        final TextView gloss;
+        final TextView minor;
+        final TextView maori;
+        final ImageView diagram;
+
+        WordHolder(View v) {
+            super(v);
+            gloss = (TextView) v.findViewById(R.id.item_gloss);
+            minor = (TextView) v.findViewById(R.id.item_minor);
+            maori = (TextView) v.findViewById(R.id.item_maori);
+            diagram = (ImageView) v.findViewById(R.id.diagram);
+            v.setOnClickListener(this);
+        }
+
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) onWordClick(position);
         }
     }
 
@@ -173,108 +289,37 @@ public class NZSLDictionary extends AppCompatActivity {
         }
     }
 
-    static HandshapeInfo[] Handshapes = new HandshapeInfo[]{
-            new HandshapeInfo(0, null),
-            new HandshapeInfo(R.drawable.handshape_1_1_1, "1.1.1"),
-            new HandshapeInfo(R.drawable.handshape_1_1_2, "1.1.2"),
-            new HandshapeInfo(R.drawable.handshape_1_1_3, "1.1.3"),
-            new HandshapeInfo(R.drawable.handshape_1_2_1, "1.2.1"),
-            new HandshapeInfo(R.drawable.handshape_1_2_2, "1.2.2"),
-            new HandshapeInfo(R.drawable.handshape_1_3_1, "1.3.1"),
-            new HandshapeInfo(R.drawable.handshape_1_3_2, "1.3.2"),
-            new HandshapeInfo(R.drawable.handshape_1_4_1, "1.4.1"),
-            new HandshapeInfo(R.drawable.handshape_2_1_1, "2.1.1"),
-            new HandshapeInfo(R.drawable.handshape_2_1_2, "2.1.2"),
-            new HandshapeInfo(R.drawable.handshape_2_2_1, "2.2.1"),
-            new HandshapeInfo(R.drawable.handshape_2_2_2, "2.2.2"),
-            new HandshapeInfo(R.drawable.handshape_2_3_1, "2.3.1"),
-            new HandshapeInfo(R.drawable.handshape_2_3_2, "2.3.2"),
-            new HandshapeInfo(R.drawable.handshape_2_3_3, "2.3.3"),
-            new HandshapeInfo(R.drawable.handshape_3_1_1, "3.1.1"),
-            new HandshapeInfo(R.drawable.handshape_3_2_1, "3.2.1"),
-            new HandshapeInfo(R.drawable.handshape_3_3_1, "3.3.1"),
-            new HandshapeInfo(R.drawable.handshape_3_4_1, "3.4.1"),
-            new HandshapeInfo(R.drawable.handshape_3_4_2, "3.4.2"),
-            new HandshapeInfo(R.drawable.handshape_3_5_1, "3.5.1"),
-            new HandshapeInfo(R.drawable.handshape_3_5_2, "3.5.2"),
-            new HandshapeInfo(R.drawable.handshape_4_1_1, "4.1.1"),
-            new HandshapeInfo(R.drawable.handshape_4_1_2, "4.1.2"),
-            new HandshapeInfo(R.drawable.handshape_4_2_1, "4.2.1"),
-            new HandshapeInfo(R.drawable.handshape_4_2_2, "4.2.2"),
-            new HandshapeInfo(R.drawable.handshape_4_3_1, "4.3.1"),
-            new HandshapeInfo(R.drawable.handshape_4_3_2, "4.3.2"),
-            new HandshapeInfo(R.drawable.handshape_5_1_1, "5.1.1"),
-            new HandshapeInfo(R.drawable.handshape_5_1_2, "5.1.2"),
-            new HandshapeInfo(R.drawable.handshape_5_2_1, "5.2.1"),
-            new HandshapeInfo(R.drawable.handshape_5_3_1, "5.3.1"),
-            new HandshapeInfo(R.drawable.handshape_5_3_2, "5.3.2"),
-            new HandshapeInfo(R.drawable.handshape_5_4_1, "5.4.1"),
-            new HandshapeInfo(R.drawable.handshape_6_1_1, "6.1.1"),
-            new HandshapeInfo(R.drawable.handshape_6_1_2, "6.1.2"),
-            new HandshapeInfo(R.drawable.handshape_6_1_3, "6.1.3"),
-            new HandshapeInfo(R.drawable.handshape_6_1_4, "6.1.4"),
-            new HandshapeInfo(R.drawable.handshape_6_2_1, "6.2.1"),
-            new HandshapeInfo(R.drawable.handshape_6_2_2, "6.2.2"),
-            new HandshapeInfo(R.drawable.handshape_6_2_3, "6.2.3"),
-            new HandshapeInfo(R.drawable.handshape_6_2_4, "6.2.4"),
-            new HandshapeInfo(R.drawable.handshape_6_3_1, "6.3.1"),
-            new HandshapeInfo(R.drawable.handshape_6_3_2, "6.3.2"),
-            new HandshapeInfo(R.drawable.handshape_6_4_1, "6.4.1"),
-            new HandshapeInfo(R.drawable.handshape_6_4_2, "6.4.2"),
-            new HandshapeInfo(R.drawable.handshape_6_5_1, "6.5.1"),
-            new HandshapeInfo(R.drawable.handshape_6_5_2, "6.5.2"),
-            new HandshapeInfo(R.drawable.handshape_6_6_1, "6.6.1"),
-            new HandshapeInfo(R.drawable.handshape_6_6_2, "6.6.2"),
-            new HandshapeInfo(R.drawable.handshape_7_1_1, "7.1.1"),
-            new HandshapeInfo(R.drawable.handshape_7_1_2, "7.1.2"),
-            new HandshapeInfo(R.drawable.handshape_7_1_3, "7.1.3"),
-            new HandshapeInfo(R.drawable.handshape_7_1_4, "7.1.4"),
-            new HandshapeInfo(R.drawable.handshape_7_2_1, "7.2.1"),
-            new HandshapeInfo(R.drawable.handshape_7_3_1, "7.3.1"),
-            new HandshapeInfo(R.drawable.handshape_7_3_2, "7.3.2"),
-            new HandshapeInfo(R.drawable.handshape_7_3_3, "7.3.3"),
-            new HandshapeInfo(R.drawable.handshape_7_4_1, "7.4.1"),
-            new HandshapeInfo(R.drawable.handshape_7_4_2, "7.4.2"),
-            new HandshapeInfo(R.drawable.handshape_8_1_1, "8.1.1"),
-            new HandshapeInfo(R.drawable.handshape_8_1_2, "8.1.2"),
-            new HandshapeInfo(R.drawable.handshape_8_1_3, "8.1.3"),
-    };
+    // The galleries' first item is "any".
+    static HandshapeInfo[] Handshapes = galleryItems(SignIcons.HANDSHAPE_CODES, SignIcons.HANDSHAPE_DRAWABLES);
+    static HandshapeInfo[] Locations = galleryItems(SignIcons.LOCATION_CODES, SignIcons.LOCATION_DRAWABLES);
 
-    static HandshapeInfo[] Locations = new HandshapeInfo[]{
-            new HandshapeInfo(0, null),
-            new HandshapeInfo(R.drawable.location_1_1_in_front_of_body, "in front of body"),
-            new HandshapeInfo(R.drawable.location_2_2_in_front_of_face, "in front of face"),
-            new HandshapeInfo(R.drawable.location_3_3_head, "head"),
-            new HandshapeInfo(R.drawable.location_3_4_top_of_head, "top of head"),
-            new HandshapeInfo(R.drawable.location_3_5_eyes, "eyes"),
-            new HandshapeInfo(R.drawable.location_3_6_nose, "nose"),
-            new HandshapeInfo(R.drawable.location_3_7_ear, "ear"),
-            new HandshapeInfo(R.drawable.location_3_8_cheek, "cheek"),
-            new HandshapeInfo(R.drawable.location_3_9_lower_head, "lower head"),
-            new HandshapeInfo(R.drawable.location_4_10_neck_throat, "neck/throat"),
-            new HandshapeInfo(R.drawable.location_4_11_shoulders, "shoulders"),
-            new HandshapeInfo(R.drawable.location_4_12_chest, "chest"),
-            new HandshapeInfo(R.drawable.location_4_13_abdomen, "abdomen"),
-            new HandshapeInfo(R.drawable.location_4_14_hips_pelvis_groin, "hips/pelvis/groin"),
-            new HandshapeInfo(R.drawable.location_4_15_upper_leg, "upper leg"),
-            new HandshapeInfo(R.drawable.location_5_16_upper_arm, "upper arm"),
-            new HandshapeInfo(R.drawable.location_5_17_elbow, "elbow"),
-            new HandshapeInfo(R.drawable.location_5_18_lower_arm, "lower arm"),
-            new HandshapeInfo(R.drawable.location_6_19_wrist, "wrist"),
-            new HandshapeInfo(R.drawable.location_6_20_fingers_thumb, "fingers/thumb"),
-            new HandshapeInfo(R.drawable.location_6_22_back_of_hand, "back of hand"),
-    };
+    private static HandshapeInfo[] galleryItems(String[] codes, int[] drawables) {
+        HandshapeInfo[] items = new HandshapeInfo[codes.length + 1];
+        items[0] = new HandshapeInfo(0, null);
+        for (int i = 0; i < codes.length; i++) {
+            items[i + 1] = new HandshapeInfo(drawables[i], codes[i]);
+        }
+        return items;
+    }
 
     static class HandshapeAdapter extends ArrayAdapter<HandshapeInfo> {
         HandshapeInfo[] icons;
+        IconAtlas atlas;
+        String[] iconNames;
 
-        public HandshapeAdapter(Context context, int resource, int textViewResourceId, HandshapeInfo[] icons) {
+        public HandshapeAdapter(Context context, int resource, int textViewResourceId, HandshapeInfo[] icons, IconAtlas atlas) {
             super(context, resource, textViewResourceId, icons);
             this.icons = icons;
+            this.atlas = atlas;
+            iconNames = new String[icons.length];
+            for (int i = 1; i < icons.length; i++) {
+                iconNames[i] = context.getResources().getResourceEntryName(icons[i].resource_id);
+            }
         }
 
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
+            long begin = StartupTimeline.begin("gallery item");
             View v = super.getView(position, convertView, parent);
             TextView tv = (TextView) v.findViewById(R.id.handshape_label);
             ImageView iv = (ImageView) v.findViewById(R.id.handshape_item);
@@ -283,10 +328,16 @@ public class NZSLDictionary extends AppCompatActivity {
                 tv.setVisibility(View.VISIBLE);
                 iv.setVisibility(View.GONE);
             } else {
-                iv.setImageResource(this.icons[position].resource_id);
+                Drawable icon = atlas != null ? atlas.getIcon(iconNames[position]) : null;
+                if (icon != null) {
+                    iv.setImageDrawable(icon);
+                } else {
+                    iv.setImageResource(this.icons[position].resource_id);
+                }
                 iv.setVisibility(View.VISIBLE);
                 tv.setVisibility(View.GONE);
             }
+            StartupTimeline.end("gallery item", begin);
             return v;
         }
     }
@@ -296,45 +347,43 @@ public class NZSLDictionary extends AppCompatActivity {
      */
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        long begin = StartupTimeline.begin(StartupTimeline.MAIN_ACTIVITY_CREATE);
         super.onCreate(savedInstanceState);
 
-        dictionary = new Dictionary(getApplicationContext());
         // following based on http://stackoverflow.com/questions/1737009/how-to-make-a-nice-looking-listview-filter-on-android
+        long inflate = StartupTimeline.begin("inflate main layout");
         setContentView(R.layout.main);
+        StartupTimeline.end("inflate main layout", inflate);
 
-        mSearchResultsList = (ListView) findViewById(android.R.id.list);
+        mSearchResultsList = (RecyclerView) findViewById(android.R.id.list);
+        mSearchResultsList.setLayoutManager(new LinearLayoutManager(this));
         mToolbar = (Toolbar) findViewById(R.id.app_toolbar);
         setSupportActionBar(mToolbar);
 
-        View header = LayoutInflater.from(this).inflate(R.layout.handshape, null);
-        getListView().addHeaderView(header, null, false);
-        Gallery hsv = (Gallery) findViewById(R.id.handshape);
-        hsv.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                handshapeFilter = Handshapes[position].value;
-                updateHandshapeList();
-            }
-
-            public void onNothingSelected(AdapterView<?> parent) {
+        // The search box comes first, so it can be used as soon as the screen appears. The
+        // rest of the screen is hidden until the user acts, or is below the word of the day,
+        // so setting it up waits until after the first frame.
+        idleInit = new IdleInitializer();
+        final View header = LayoutInflater.from(this).inflate(R.layout.handshape, mSearchResultsList, false);
+        handshapeHeader = header.findViewById(R.id.handshape_header);
+        handshapeHeader.setVisibility(View.GONE);
+        idleInit.add(INIT_ABOUT, new Runnable() {
+            public void run() {
+                WebView about = (WebView) ((ViewStub) findViewById(R.id.about_content_stub)).inflate();
+                about.loadUrl("file:///android_asset/html/about.html");
             }
         });
-        hsv.setAdapter(new HandshapeAdapter(this, R.layout.handshape_item, R.id.handshape_label, Handshapes));
-        Gallery lcv = (Gallery) findViewById(R.id.location);
-        lcv.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                locationFilter = Locations[position].value;
-                updateHandshapeList();
-            }
-
-            public void onNothingSelected(AdapterView<?> parent) {
+        idleInit.add(INIT_GALLERIES, new Runnable() {
+            public void run() {
+                setupGalleries(header);
             }
         });
-        lcv.setAdapter(new HandshapeAdapter(this, R.layout.handshape_item, R.id.handshape_label, Locations));
-        handshapeHeader = header.findViewById(R.id.handshape_header);
-        handshapeHeader.setVisibility(View.GONE);
 
-        adapter = new DictAdapter(this, R.layout.list_item, dictionary.getWords());
-        getListView().setAdapter(adapter);
+        searchScheduler = new SearchScheduler();
+        pageScheduler = new SearchScheduler();
+        imageLoader = Application.get(this).getImageLoader();
+        adapter = new DictAdapter(this, R.layout.list_item, header);
+        mSearchResultsList.setAdapter(adapter);
         filterText = (EditText) findViewById(R.id.building_list_search_box);
         filterTextContainer = findViewById(R.id.building_list_search_container);
         filterText.setOnEditorActionListener(new EditText.OnEditorActionListener() {
@@ -353,58 +402,123 @@ public class NZSLDictionary extends AppCompatActivity {
             }
 
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                adapter.getFilter().filter(s);
-                getListView().setVisibility(s.length() != 0 ? View.VISIBLE : View.GONE);
+                updateKeywordList(s.toString());
+                mSearchResultsList.setVisibility(s.length() != 0 ? View.VISIBLE : View.GONE);
                 wotd.setVisibility(s.length() == 0 ? View.VISIBLE : View.GONE);
             }
         };
         filterText.addTextChangedListener(filterTextWatcher);
 
-        getListView().setVisibility(View.GONE);
-        getListView().setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                onListItemClick((ListView) parent, view, position, id);
+        mSearchResultsList.setVisibility(View.GONE);
+
+        wotd = findViewById(R.id.building_list_wotd);
+
+        // The dictionary is loaded in the background when the app starts. Until it is ready
+        // the word of the day shows a progress indicator, and searches are run once it loads.
+        Application.get(this).whenDictionaryLoaded(dictionaryListener);
+
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTimeline.mark(StartupTimeline.FIRST_FRAME);
+                idleInit.start();
+                return true;
             }
         });
+        StartupTimeline.end(StartupTimeline.MAIN_ACTIVITY_CREATE, begin);
+    }
 
-        wotd = findViewById(R.id.building_list_wotd);
-        ImageView wotdImage = (ImageView) findViewById(R.id.building_list_wotd_image);
+    private void setupGalleries(View header) {
+        IconAtlas atlas = Application.get(this).getIconAtlas();
+        Gallery hsv = (Gallery) header.findViewById(R.id.handshape);
+        hsv.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                handshapeFilter = Handshapes[position].value;
+                updateHandshapeList();
+            }
+
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        hsv.setAdapter(new HandshapeAdapter(this, R.layout.handshape_item, R.id.handshape_label, Handshapes, atlas));
+        Gallery lcv = (Gallery) header.findViewById(R.id.location);
+        lcv.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                locationFilter = Locations[position].value;
+                updateHandshapeList();
+            }
+
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        lcv.setAdapter(new HandshapeAdapter(this, R.layout.handshape_item, R.id.handshape_label, Locations, atlas));
+    }
+
+    private void onDictionaryLoaded(Dictionary dictionary) {
+        this.dictionary = dictionary;
+        searchSession = new SearchSession(dictionary);
+        showWordOfTheDay();
+
+        if (!filterText.isEnabled()) {
+            updateHandshapeList();
+        } else if (filterText.getText().length() > 0) {
+            updateKeywordList(filterText.getText().toString());
+        }
+    }
+
+    private void showWordOfTheDay() {
+        final ImageView wotdImage = (ImageView) findViewById(R.id.building_list_wotd_image);
         TextView wotdGloss = (TextView) findViewById(R.id.building_list_wotd_gloss);
         final Dictionary.DictItem item = dictionary.getWordOfTheDay();
 
-        try {
-            InputStream ims = getAssets().open(item.imagePath());
-            Drawable d = Drawable.createFromStream(ims, null);
-            wotdImage.setImageDrawable(d);
-        } catch (IOException e) {
-            System.out.println(e.toString());
-        }
+        // The gloss is shown straight away, and the illustration once the screen is idle.
+        idleInit.add(INIT_WOTD_IMAGE, new Runnable() {
+            public void run() {
+                imageLoader.load(item.imagePath(), wotdImage);
+                wotdImage.setVisibility(View.VISIBLE);
+                findViewById(R.id.building_list_wotd_progress).setVisibility(View.GONE);
+            }
+        });
+        StartupTimeline.mark("word of the day shown");
 
         wotd.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
                 hideKeyboard();
                 Intent next = new Intent();
                 next.setClass(NZSLDictionary.this, WordActivity.class);
-                next.putExtra("item", item);
+                next.putExtra("id", item.id);
                 startActivity(next);
             }
         });
-        wotdGloss.setText(item.gloss);
-
-        ((WebView) findViewById(R.id.about_content)).loadUrl("file:///android_asset/html/about.html");
-    }
-
-    public ListView getListView() {
-        return mSearchResultsList;
+        wotdGloss.setText(item.gloss());
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        Application.get(this).removeDictionaryListener(dictionaryListener);
+        searchScheduler.shutdown();
+        pageScheduler.shutdown();
+        idleInit.cancel();
         filterText.removeTextChangedListener(filterTextWatcher);
     }
 
+    /**
+     * Add the startup timeline and search statistics to the activity's dumpsys output.
+     * Passing "reset-stats" after the activity name starts the search statistics again.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        StartupTimeline.dump(prefix, writer);
+        if (dictionary == null) return;
+        dictionary.getStats().dump(prefix, writer);
+        if (args != null && Arrays.asList(args).contains("reset-stats")) {
+            dictionary.getStats().reset();
+        }
+    }
+
     private void hideKeyboard() {
         try {
             InputMethodManager inputManager = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
@@ -415,18 +529,55 @@ public class NZSLDictionary extends AppCompatActivity {
     }
 
 
+    private void updateKeywordList(final String target) {
+        if (dictionary == null) {
+            // this will be rerun once the dictionary has loaded
+            return;
+        }
+        pageScheduler.cancel();
+        final long requested = System.nanoTime();
+        searchScheduler.schedule(KEYWORD_SEARCH_DELAY_MS, new Callable<ResultPage>() {
+            public ResultPage call() {
+                Dictionary.SearchCursor cursor = searchSession.getWordsCursor(target);
+                return new ResultPage(cursor.next(RESULTS_PAGE_SIZE), cursor, requested);
+            }
+        }, keywordResults);
+    }
+
+    private void loadMoreKeywordResults(final Dictionary.SearchCursor cursor) {
+        final long requested = System.nanoTime();
+        pageScheduler.schedule(0, new Callable<ResultPage>() {
+            public ResultPage call() {
+                return new ResultPage(cursor.next(RESULTS_PAGE_SIZE), cursor, requested);
+            }
+        }, moreKeywordResults);
+    }
+
     private void updateHandshapeList() {
-        String hf = handshapeFilter != null ? handshapeFilter : "";
-        String lf = locationFilter != null ? locationFilter : "";
-        adapter.getFilter().filter(hf + "|" + lf);
+        if (dictionary == null) {
+            // this will be rerun once the dictionary has loaded
+            return;
+        }
+        final String hf = handshapeFilter;
+        final String lf = locationFilter;
+        pageScheduler.cancel();
+        searchScheduler.schedule(HANDSHAPE_SEARCH_DELAY_MS, new Callable<List<Dictionary.DictItem>>() {
+            public List<Dictionary.DictItem> call() {
+                return dictionary.getWordsByHandshape(hf, lf);
+            }
+        }, searchResults);
     }
 
-    protected void onListItemClick(ListView l, View v, int position, long id) {
-        Dictionary.DictItem item = (Dictionary.DictItem) getListView().getItemAtPosition(position);
-        Log.d("list", item.gloss);
+    protected void onWordClick(int position) {
+        Dictionary.DictItem item = adapter.getItem(position);
+        Log.d("list", item.gloss());
         Intent next = new Intent();
         next.setClass(this, WordActivity.class);
-        next.putExtra("item", item);
+        next.putExtra("id", item.id);
+        // Pass along the rest of the results so the word view can page through them.
+        next.putExtra("ids", adapter.getWordIds());
+        // The header is the first row in the list.
+        next.putExtra("position", position - 1);
         startActivity(next);
     }
 
@@ -458,6 +609,7 @@ public class NZSLDictionary extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_search_mode_handshape:
+                idleInit.runNow(INIT_GALLERIES);
                 filterText.setText("(handshape search)");
                 filterText.setEnabled(false);
                 filterTextContainer.setVisibility(View.GONE);
@@ -469,7 +621,9 @@ public class NZSLDictionary extends AppCompatActivity {
                 filterText.setEnabled(true);
                 filterTextContainer.setVisibility(View.VISIBLE);
                 handshapeHeader.setVisibility(View.GONE);
-                adapter.getFilter().filter(null);
+                searchScheduler.cancel();
+                pageScheduler.cancel();
+                if (dictionary != null) adapter.setWords(dictionary.getWords(), null);
                 break;
         }
 
@@ -0,0 +1,87 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A sorted array of normalised terms and the index of the word each one belongs to.
+ *
+ * All terms that start with a given prefix sit next to each other in sorted order, so the
+ * words whose terms equal or start with a search term are found with a binary search for the
+ * first such term followed by a walk over the matching range.
+ */
+class PrefixIndex {
+    private final String[] terms;
+    private final int[] ids;
+
+    private static class Entry {
+        final String term;
+        final int id;
+
+        Entry(String term, int id) {
+            this.term = term;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Build an index over one or more fields. Each array must be indexed by word, and every
+     * field of a word is added as a separate term.
+     */
+    PrefixIndex(String[]... fields) {
+        int n = fields[0].length;
+        Entry[] entries = new Entry[n * fields.length];
+        int k = 0;
+        for (String[] field : fields) {
+            for (int id = 0; id < n; id++) {
+                entries[k++] = new Entry(field[id], id);
+            }
+        }
+        Arrays.sort(entries, new Comparator<Entry>() {
+            public int compare(Entry a, Entry b) {
+                return a.term.compareTo(b.term);
+            }
+        });
+
+        terms = new String[entries.length];
+        ids = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            terms[i] = entries[i].term;
+            ids[i] = entries[i].id;
+        }
+    }
+
+    /**
+     * Return the position of the first term that starts with the normalised prefix. The
+     * matching terms continue from there for as long as {@link #matches} is true.
+     */
+    int first(String prefix) {
+        return lowerBound(prefix);
+    }
+
+    boolean matches(int position, String prefix) {
+        return position < terms.length && terms[position].startsWith(prefix);
+    }
+
+    boolean isExact(int position, String prefix) {
+        return terms[position].length() == prefix.length();
+    }
+
+    int id(int position) {
+        return ids[position];
+    }
+
+    private int lowerBound(String s) {
+        int lo = 0;
+        int hi = terms.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms[mid].compareTo(s) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
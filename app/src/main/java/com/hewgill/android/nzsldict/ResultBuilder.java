@@ -0,0 +1,74 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.Arrays;
+
+/**
+ * Collects search matches into ranked buckets, and reads back the results in order.
+ *
+ * Results are ordered first by bucket, then by image name within each bucket. Instead of
+ * keeping sorted sets of words, each bucket holds the precomputed image rank of its words in a
+ * plain int array. Words added in image order keep a bucket sorted as it fills; otherwise the
+ * bucket must be sorted once all its words are added. Each word must only be added to one
+ * bucket.
+ */
+class ResultBuilder {
+    static final int EXACT_PRIMARY = 0;
+    static final int STARTS_WITH_PRIMARY = 1;
+    static final int CONTAINS_PRIMARY = 2;
+    static final int EXACT_SECONDARY = 3;
+    static final int CONTAINS_SECONDARY = 4;
+    // Words close to the term but not containing it, one and two edits away.
+    static final int FUZZY_CLOSE = 5;
+    static final int FUZZY_FAR = 6;
+    static final int BUCKETS = 7;
+
+    private final int[] imageRank;
+    private final int[] byImageRank;
+    private final int[][] buckets = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+
+    /**
+     * @param imageRank   the position of each word when all words are sorted by image name
+     * @param byImageRank the inverse of imageRank, the word at each position in image order
+     */
+    ResultBuilder(int[] imageRank, int[] byImageRank) {
+        this.imageRank = imageRank;
+        this.byImageRank = byImageRank;
+    }
+
+    void add(int bucket, int id) {
+        int[] ranks = buckets[bucket];
+        if (ranks == null) {
+            ranks = buckets[bucket] = new int[16];
+        } else if (sizes[bucket] == ranks.length) {
+            ranks = buckets[bucket] = Arrays.copyOf(ranks, ranks.length * 2);
+        }
+        ranks[sizes[bucket]++] = imageRank[id];
+    }
+
+    void sort(int bucket) {
+        if (sizes[bucket] > 1) Arrays.sort(buckets[bucket], 0, sizes[bucket]);
+    }
+
+    int size(int bucket) {
+        return sizes[bucket];
+    }
+
+    int size() {
+        int n = 0;
+        for (int size : sizes) n += size;
+        return n;
+    }
+
+    /**
+     * Return the word at a position in the results.
+     */
+    int id(int position) {
+        int p = position;
+        for (int b = 0; b < BUCKETS; b++) {
+            if (p < sizes[b]) return byImageRank[buckets[b][p]];
+            p -= sizes[b];
+        }
+        throw new IndexOutOfBoundsException("result " + position + " of " + size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.hewgill.android.nzsldict;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs searches one at a time on a background thread, and delivers only the result of the
+ * latest search to the main thread.
+ *
+ * Each search waits for a short delay before starting, so that a burst of changes (such as
+ * typing, or flinging a gallery) only runs the last one. Scheduling a new search drops any
+ * search still waiting and interrupts any that is running. Long running searches should check
+ * {@link Thread#isInterrupted()} and stop early by throwing {@link CancellationException}.
+ *
+ * All methods must be called on the main thread.
+ */
+public class SearchScheduler {
+    /**
+     * Called on the main thread with the result of the latest search.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "search");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    });
+    private int mGeneration;
+    private Runnable mPending;
+    private Future<?> mRunning;
+
+    /**
+     * Run the search after the delay, unless another search is scheduled first.
+     */
+    public <T> void schedule(long delayMillis, final Callable<T> search, final Callback<T> callback) {
+        cancel();
+        final int generation = mGeneration;
+        mPending = new Runnable() {
+            public void run() {
+                mPending = null;
+                mRunning = mExecutor.submit(new Runnable() {
+                    public void run() {
+                        final T result;
+                        try {
+                            result = search.call();
+                        } catch (CancellationException x) {
+                            return;
+                        } catch (Exception x) {
+                            Log.e("search", "search failed", x);
+                            return;
+                        }
+                        mHandler.post(new Runnable() {
+                            public void run() {
+                                if (generation == mGeneration) {
+                                    mRunning = null;
+                                    callback.onResult(result);
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        };
+        mHandler.postDelayed(mPending, delayMillis);
+    }
+
+    /**
+     * Drop any waiting or running search, so that no result is delivered for it.
+     */
+    public void cancel() {
+        mGeneration++;
+        if (mPending != null) {
+            mHandler.removeCallbacks(mPending);
+            mPending = null;
+        }
+        if (mRunning != null) {
+            mRunning.cancel(true);
+            mRunning = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,51 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.List;
+
+/**
+ * Keyword search that remembers the previous search while the user is typing.
+ *
+ * A word can only match a term if it also matches every prefix of that term, so when the new
+ * term extends the previous one only the previous matches need to be checked again. Any other
+ * change to the term (deleting or editing characters) searches the whole dictionary. Near
+ * misses don't follow that rule, so they are always looked for in the whole dictionary.
+ *
+ * The previous search may only have been read a page at a time, in which case the words it
+ * hadn't checked yet are checked again along with its matches so far.
+ */
+public class SearchSession {
+    private final Dictionary dictionary;
+    private String lastTerm;
+    private Dictionary.SearchCursor lastCursor;
+
+    public SearchSession(Dictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public synchronized List<Dictionary.DictItem> getWords(String target) {
+        return getWordsCursor(target).rest();
+    }
+
+    /**
+     * Start a search whose results are read a page at a time, like
+     * {@link Dictionary#getWordsCursor}.
+     */
+    public synchronized Dictionary.SearchCursor getWordsCursor(String target) {
+        String term = Dictionary.normalise(target);
+        int[] within = null;
+        if (lastTerm != null && term.startsWith(lastTerm)) {
+            within = lastCursor.candidateIds();
+        }
+        lastCursor = dictionary.search(term, within);
+        lastTerm = term;
+        return lastCursor;
+    }
+
+    /**
+     * Forget the previous search, so the next one checks the whole dictionary.
+     */
+    public synchronized void reset() {
+        lastTerm = null;
+        lastCursor = null;
+    }
+}
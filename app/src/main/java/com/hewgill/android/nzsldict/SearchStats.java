@@ -0,0 +1,178 @@
+package com.hewgill.android.nzsldict;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Always on statistics about the dictionary's searches, so that how long they take on real
+ * devices can be measured and compared between releases.
+ *
+ * Latencies and result counts are kept in histograms with logarithmic buckets, so recording a
+ * search is a couple of increments and nothing is kept per search. Nothing is recorded unless
+ * searches are being run. The report is written by {@link #dump}, which the main activity
+ * calls for {@code adb shell dumpsys activity com.hewgill.android.nzsldict/.NZSLDictionary}.
+ */
+public class SearchStats {
+    // Operations timed
+    static final int KEYWORD = 0;
+    static final int KEYWORD_MORE = 1;
+    static final int HANDSHAPE = 2;
+    private static final String[] OPERATION_NAMES = {
+            "keyword search, first page",
+            "keyword search, later pages",
+            "handshape/location filter",
+    };
+    // Keyword result counts are only known for searches read to the end.
+    private static final String[] RESULT_NAMES = {
+            "results of searches read to the end",
+            "results",
+            "results",
+    };
+
+    // Parts of a keyword search, which fill the result buckets: the prefix index finds exact
+    // and starts with matches, the candidate scan finds words containing the term, and the
+    // near miss lookup finds words a few edits away.
+    static final int PHASE_PREFIX = 0;
+    static final int PHASE_SCAN = 1;
+    static final int PHASE_FUZZY = 2;
+    private static final String[] PHASE_NAMES = {
+            "prefix index",
+            "candidate scan",
+            "near misses",
+    };
+
+    private static final String[] BUCKET_NAMES = {
+            "exact primary",
+            "starts with primary",
+            "contains primary",
+            "exact secondary",
+            "contains secondary",
+            "near miss (1 edit)",
+            "near miss (2 edits)",
+    };
+
+    private final Histogram[] latencies = new Histogram[OPERATION_NAMES.length];
+    private final Histogram[] resultCounts = new Histogram[OPERATION_NAMES.length];
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+    private final long[] phaseCounts = new long[PHASE_NAMES.length];
+    private final long[] bucketWords = new long[ResultBuilder.BUCKETS];
+    private long since = System.currentTimeMillis();
+
+    public SearchStats() {
+        for (int op = 0; op < latencies.length; op++) {
+            latencies[op] = new Histogram();
+            resultCounts[op] = new Histogram();
+        }
+    }
+
+    synchronized void recordLatency(int operation, long nanos) {
+        latencies[operation].record(nanos / 1000);
+    }
+
+    synchronized void recordResults(int operation, int count) {
+        resultCounts[operation].record(count);
+    }
+
+    synchronized void recordPhase(int phase, long nanos) {
+        phaseNanos[phase] += nanos;
+        phaseCounts[phase]++;
+    }
+
+    /**
+     * Record how many words a completed keyword search placed in each bucket.
+     */
+    synchronized void recordBuckets(ResultBuilder results) {
+        for (int b = 0; b < bucketWords.length; b++) {
+            bucketWords[b] += results.size(b);
+        }
+    }
+
+    public synchronized void reset() {
+        for (int op = 0; op < latencies.length; op++) {
+            latencies[op] = new Histogram();
+            resultCounts[op] = new Histogram();
+        }
+        for (int p = 0; p < phaseNanos.length; p++) {
+            phaseNanos[p] = 0;
+            phaseCounts[p] = 0;
+        }
+        for (int b = 0; b < bucketWords.length; b++) {
+            bucketWords[b] = 0;
+        }
+        since = System.currentTimeMillis();
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.printf(Locale.US, "%sSearch stats for the last %d s:%n", prefix, (System.currentTimeMillis() - since) / 1000);
+        for (int op = 0; op < latencies.length; op++) {
+            Histogram l = latencies[op];
+            Histogram r = resultCounts[op];
+            writer.printf(Locale.US, "%s  %s: %d%n", prefix, OPERATION_NAMES[op], l.count);
+            if (l.count > 0) {
+                writer.printf(Locale.US, "%s    latency us: mean %d p50 %d p90 %d p99 %d max %d%n", prefix,
+                        l.sum / l.count, l.percentile(0.5), l.percentile(0.9), l.percentile(0.99), l.max);
+            }
+            if (r.count > 0) {
+                writer.printf(Locale.US, "%s    %s: mean %d p50 %d p90 %d p99 %d max %d%n", prefix, RESULT_NAMES[op],
+                        r.sum / r.count, r.percentile(0.5), r.percentile(0.9), r.percentile(0.99), r.max);
+            }
+        }
+        writer.printf(Locale.US, "%s  keyword search time by part:%n", prefix);
+        for (int p = 0; p < phaseNanos.length; p++) {
+            writer.printf(Locale.US, "%s    %s: %d runs, total %d us, mean %d us%n", prefix, PHASE_NAMES[p],
+                    phaseCounts[p], phaseNanos[p] / 1000, phaseCounts[p] > 0 ? phaseNanos[p] / phaseCounts[p] / 1000 : 0);
+        }
+        writer.printf(Locale.US, "%s  keyword results by bucket:%n", prefix);
+        for (int b = 0; b < bucketWords.length; b++) {
+            writer.printf(Locale.US, "%s    %s: %d%n", prefix, BUCKET_NAMES[b], bucketWords[b]);
+        }
+    }
+
+    /**
+     * Counts values in buckets a quarter of a power of two wide, so percentiles are accurate to
+     * within about 20% whatever the range of values.
+     */
+    static class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        long count;
+        long sum;
+        long max;
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            counts[index(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        /**
+         * Return the value that the given fraction of recorded values are at or below, rounded
+         * up to the top of its bucket.
+         */
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        static int index(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int e = 63 - Long.numberOfLeadingZeros(value);
+            int m = (int) (value >> (e - 2));
+            return (e - 1) * SUB_BUCKETS + m - SUB_BUCKETS;
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int e = index / SUB_BUCKETS + 1;
+            long m = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((m + 1) << (e - 2)) - 1;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.hewgill.android.nzsldict;
 
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
@@ -8,9 +7,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
-import java.io.IOException;
-import java.io.InputStream;
-
 
 /**
  * A simple {@link Fragment} subclass.
@@ -18,7 +14,7 @@ import java.io.InputStream;
  * create an instance of this fragment.
  */
 public class SignIllustrationFragment extends Fragment {
-    private static final String ARG_DICT_ITEM = "dictItem";
+    private static final String ARG_WORD_ID = "wordId";
     private Dictionary.DictItem mDictItem;
 
     public SignIllustrationFragment() {
@@ -29,13 +25,13 @@ public class SignIllustrationFragment extends Fragment {
      * Use this factory method to create a new instance of
      * this fragment using the provided parameters.
      *
-     * @param dictItem The dictItem to use as the context for the fragment
+     * @param wordId The id of the dictItem to use as the context for the fragment
      * @return A new instance of fragment SignIllustrationFragment.
      */
-    public static SignIllustrationFragment newInstance(Dictionary.DictItem dictItem) {
+    public static SignIllustrationFragment newInstance(int wordId) {
         SignIllustrationFragment fragment = new SignIllustrationFragment();
         Bundle args = new Bundle();
-        args.putSerializable(ARG_DICT_ITEM, dictItem);
+        args.putInt(ARG_WORD_ID, wordId);
         fragment.setArguments(args);
         return fragment;
     }
@@ -44,7 +40,7 @@ public class SignIllustrationFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
-            mDictItem = (Dictionary.DictItem) getArguments().getSerializable(ARG_DICT_ITEM);
+            mDictItem = Application.get(getContext()).getWord(getArguments().getInt(ARG_WORD_ID));
         }
     }
 
@@ -56,19 +52,15 @@ public class SignIllustrationFragment extends Fragment {
         ImageView handshapeImageView    = (ImageView) rootView.findViewById(R.id.sign_handshape);
         ImageView locationImageView     = (ImageView) rootView.findViewById(R.id.sign_location);
 
-        illustrationImageView.setContentDescription(mDictItem.gloss + " illustration");
-        handshapeImageView.setContentDescription(mDictItem.handshape);
-        locationImageView.setContentDescription(mDictItem.location);
-        handshapeImageView.setImageResource(getContext().getResources().getIdentifier(mDictItem.handshapeImage(), "drawable", getContext().getPackageName()));
-        locationImageView.setImageResource(getContext().getResources().getIdentifier(mDictItem.locationImage(), "drawable", getContext().getPackageName()));
+        illustrationImageView.setContentDescription(mDictItem.gloss() + " illustration");
+        handshapeImageView.setContentDescription(mDictItem.handshape());
+        locationImageView.setContentDescription(mDictItem.location());
+        handshapeImageView.setImageResource(SignIcons.handshapeDrawable(mDictItem.handshape()));
+        locationImageView.setImageResource(SignIcons.locationDrawable(mDictItem.location()));
 
-        try {
-            InputStream ims = getActivity().getAssets().open(mDictItem.imagePath());
-            Drawable d = Drawable.createFromStream(ims, null);
-            illustrationImageView.setImageDrawable(d);
-        } catch (IOException e) {
-            System.out.println(e.toString());
-        }
+        // Neighbouring words have their illustrations decoded ahead of time at this size, so
+        // this is usually a cache hit.
+        Application.get(getContext()).getImageLoader().load(mDictItem.imagePath(), illustrationImageView);
 
         return rootView;
     }
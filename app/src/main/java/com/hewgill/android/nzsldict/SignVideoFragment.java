@@ -13,6 +13,7 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.view.ViewPager;
 import android.view.KeyEvent;
@@ -26,6 +27,7 @@ import android.widget.MediaController;
 import android.widget.RelativeLayout;
 import android.widget.VideoView;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -36,7 +38,9 @@ import java.io.InputStream;
  * create an instance of this fragment.
  */
 public class SignVideoFragment extends Fragment {
-    private static final String ARG_DICT_ITEM = "dictItem";
+    private static final String ARG_WORD_ID = "wordId";
+    // How long to wait for a video that isn't cached to download before streaming it as well.
+    private static final long STREAM_AFTER_MS = 1000;
     private VideoView mVideo;
     private View mRootView;
     private View mAnchorView;
@@ -44,11 +48,24 @@ public class SignVideoFragment extends Fragment {
     private Dictionary.DictItem mDictItem;
     private MediaController mMediaController;
     private View mNoNetworkFrame;
+    private boolean mPlayingCachedVideo = false;
+    private boolean mStreaming = false;
+    // Whether the video tab is showing. The video is only loaded once it is.
+    private boolean mActive = false;
+    // Counts the times the video has been loaded or stopped, so a cache lookup that finishes
+    // after the video was stopped or loaded again is ignored.
+    private int mLoadGeneration = 0;
+    private final Handler mHandler = new Handler();
+    private final Runnable mStreamWhileDownloading = new Runnable() {
+        public void run() {
+            if (mActive && getView() != null) showVideo(null);
+        }
+    };
     private IntentFilter mConnectivityIntentFilter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
     private BroadcastReceiver mConnectivityChangeReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            SignVideoFragment.this.updateViewForConnectivityStatus();
+            if (mActive) SignVideoFragment.this.loadVideo();
         }
     };
 
@@ -61,13 +78,13 @@ public class SignVideoFragment extends Fragment {
      * Use this factory method to create a new instance of
      * this fragment using the provided parameters.
      *
-     * @param dictItem The dictItem to use as the context for the fragment
+     * @param wordId The id of the dictItem to use as the context for the fragment
      * @return A new instance of fragment SignIllustrationFragment.
      */
-    public static SignVideoFragment newInstance(Dictionary.DictItem dictItem) {
+    public static SignVideoFragment newInstance(int wordId) {
         SignVideoFragment fragment = new SignVideoFragment();
         Bundle args = new Bundle();
-        args.putSerializable(ARG_DICT_ITEM, dictItem);
+        args.putInt(ARG_WORD_ID, wordId);
         fragment.setArguments(args);
         return fragment;
     }
@@ -77,7 +94,7 @@ public class SignVideoFragment extends Fragment {
         super.onCreate(savedInstanceState);
         mMediaController = new MediaController(getContext());
         if (getArguments() != null) {
-            mDictItem = (Dictionary.DictItem) getArguments().getSerializable(ARG_DICT_ITEM);
+            mDictItem = Application.get(getContext()).getWord(getArguments().getInt(ARG_WORD_ID));
         }
     }
 
@@ -93,19 +110,56 @@ public class SignVideoFragment extends Fragment {
         getContext().unregisterReceiver(mConnectivityChangeReceiver);
     }
 
-    public boolean updateViewForConnectivityStatus() {
-        boolean networkIsAvailable = isNetworkAvailable();
+    /**
+     * Load the video into the view. Videos that have been downloaded before are played from
+     * the cache, even offline. Otherwise the video is downloaded into the cache, whatever the
+     * prefetch budget, so it can be played again offline, and played once it has downloaded.
+     * If that takes more than a moment it is streamed meanwhile, and the copy is kept for next
+     * time.
+     */
+    private void loadVideo() {
+        if (mPlayingCachedVideo) {
+            // connectivity doesn't matter once the video is playing from the cache
+            return;
+        }
+        final int generation = ++mLoadGeneration;
+        mHandler.removeCallbacks(mStreamWhileDownloading);
+        mHandler.postDelayed(mStreamWhileDownloading, STREAM_AFTER_MS);
+        Application.get(getContext()).getVideoCache().open(mDictItem.video(), new VideoCache.Callback() {
+            public void onOpened(File cached) {
+                if (generation == mLoadGeneration && mActive && getView() != null) {
+                    mHandler.removeCallbacks(mStreamWhileDownloading);
+                    showVideo(cached);
+                }
+            }
+        });
+    }
 
-        if (networkIsAvailable) {
+    private void showVideo(File cached) {
+        if (cached != null && mStreaming) {
+            // it was streamed while it downloaded, and the cached copy is for next time
+            return;
+        }
+        if (cached != null) {
+            mPlayingCachedVideo = true;
+            mStreaming = false;
+            mVideo.setVisibility(View.VISIBLE);
+            mNoNetworkFrame.setVisibility(View.GONE);
+            mVideo.setVideoPath(cached.getPath());
+            mMediaController.show();
+        } else if (isNetworkAvailable()) {
             mVideo.setVisibility(View.VISIBLE);
             mNoNetworkFrame.setVisibility(View.GONE);
-            mVideo.setVideoURI(Uri.parse(mDictItem.video));
+            if (!mStreaming) {
+                mStreaming = true;
+                mVideo.setVideoURI(Uri.parse(mDictItem.video()));
+                mMediaController.show();
+            }
         } else {
+            mStreaming = false;
             mVideo.setVisibility(View.GONE);
             mNoNetworkFrame.setVisibility(View.VISIBLE);
         }
-
-        return networkIsAvailable;
     }
 
     @Override
@@ -130,8 +184,12 @@ public class SignVideoFragment extends Fragment {
             }
         });
 
-        // Start loading video if network is available
-        if (isNetworkAvailable()) updateViewForConnectivityStatus();
+        // The video is loaded when the video tab is selected, which gives the prefetcher a
+        // chance to download it into the cache first.
+        mPlayingCachedVideo = false;
+        mStreaming = false;
+        mNoNetworkFrame.setVisibility(View.GONE);
+        if (mActive) loadVideo();
 
         return mRootView;
     }
@@ -146,11 +204,16 @@ public class SignVideoFragment extends Fragment {
     }
 
     public void showControls() {
-        mVideo.setVisibility(View.VISIBLE);
-        mMediaController.show();
+        mActive = true;
+        loadVideo();
     }
 
     public void stop() {
+        mActive = false;
+        mLoadGeneration++;
+        mHandler.removeCallbacks(mStreamWhileDownloading);
+        mPlayingCachedVideo = false;
+        mStreaming = false;
         mVideo.stopPlayback();
         mVideo.setVisibility(View.INVISIBLE);
         mMediaController.hide();
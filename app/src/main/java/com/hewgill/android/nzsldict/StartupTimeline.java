@@ -0,0 +1,165 @@
+package com.hewgill.android.nzsldict;
+
+import android.support.v4.os.TraceCompat;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records how the app's cold start is spent, from {@link Application#onCreate} until the main
+ * screen has drawn its first frame and shown the results of the first search.
+ *
+ * Each step is a named section, which also shows up in systrace and the Android Studio
+ * profiler. Sections that run more than once, such as decoding images, are added together.
+ * Milestones are recorded as marks, at the first time they happen. All times are measured
+ * from when the timeline was started in Application.onCreate.
+ *
+ * Recording stops once the first search has shown its results, or after a time limit if
+ * there is no search, and the timeline is written to the log. The methods may be called from
+ * any thread.
+ */
+public class StartupTimeline {
+    // Names of the sections and marks checked against the startup budgets.
+    public static final String LOAD_DICTIONARY = "load dictionary";
+    public static final String MAIN_ACTIVITY_CREATE = "NZSLDictionary.onCreate";
+    public static final String FIRST_FRAME = "first frame";
+    public static final String FIRST_SEARCH = "first search";
+    public static final String FIRST_SEARCH_RESULTS = "first search results";
+    private static final long RECORDING_LIMIT_MS = 30000;
+
+    private static long sOrigin = System.nanoTime();
+    private static boolean sFinished;
+    private static final Map<String, Section> sSections = new LinkedHashMap<>();
+    private static final Map<String, Long> sMarks = new LinkedHashMap<>();
+
+    private static class Section {
+        final long start;
+        long end;
+        long total;
+        int count;
+
+        Section(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Start the timeline. Called first thing when the process starts, and by tests to record
+     * again from scratch.
+     */
+    public static synchronized void start() {
+        sOrigin = System.nanoTime();
+        sFinished = false;
+        sSections.clear();
+        sMarks.clear();
+    }
+
+    /**
+     * Begin a section, returning the time to pass to {@link #end}. Sections on the same thread
+     * must be nested.
+     */
+    public static long begin(String name) {
+        TraceCompat.beginSection(name);
+        return System.nanoTime();
+    }
+
+    public static void end(String name, long begin) {
+        TraceCompat.endSection();
+        record(name, begin);
+    }
+
+    /**
+     * Record a section that began at the given {@link System#nanoTime} and ends now. This is
+     * for work that ends on a different thread from the one it began on, which isn't traced.
+     */
+    public static void record(String name, long begin) {
+        long now = System.nanoTime();
+        synchronized (StartupTimeline.class) {
+            if (!recording(now)) return;
+            Section s = sSections.get(name);
+            if (s == null) {
+                s = new Section(begin);
+                sSections.put(name, s);
+            }
+            s.end = now;
+            s.total += now - begin;
+            s.count++;
+        }
+    }
+
+    /**
+     * Record that a milestone has been reached, unless it already has been.
+     */
+    public static void mark(String name) {
+        long now = System.nanoTime();
+        synchronized (StartupTimeline.class) {
+            if (!recording(now) || sMarks.containsKey(name)) return;
+            sMarks.put(name, now);
+            if (name.equals(FIRST_SEARCH_RESULTS)) finish();
+        }
+    }
+
+    private static boolean recording(long now) {
+        if (!sFinished && now - sOrigin > RECORDING_LIMIT_MS * 1000000) finish();
+        return !sFinished;
+    }
+
+    private static void finish() {
+        sFinished = true;
+        Log.d("startup", report());
+    }
+
+    public static synchronized boolean isFinished() {
+        return sFinished;
+    }
+
+    /**
+     * Return when the milestone was reached in milliseconds since the start, or -1 if it
+     * hasn't been.
+     */
+    public static synchronized long markMillis(String name) {
+        Long t = sMarks.get(name);
+        return t != null ? (t - sOrigin) / 1000000 : -1;
+    }
+
+    /**
+     * Return when the section first began in milliseconds since the start, or -1 if it hasn't
+     * been recorded.
+     */
+    public static synchronized long sectionStartMillis(String name) {
+        Section s = sSections.get(name);
+        return s != null ? (s.start - sOrigin) / 1000000 : -1;
+    }
+
+    /**
+     * Return the total time spent in the section in milliseconds, or -1 if it hasn't been
+     * recorded.
+     */
+    public static synchronized long sectionMillis(String name) {
+        Section s = sSections.get(name);
+        return s != null ? s.total / 1000000 : -1;
+    }
+
+    public static synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println(report().replace("\n", "\n" + prefix));
+    }
+
+    private static String report() {
+        StringBuilder r = new StringBuilder("Startup timeline");
+        r.append(sFinished ? ":" : " (still recording):");
+        for (Map.Entry<String, Section> e : sSections.entrySet()) {
+            Section s = e.getValue();
+            r.append(String.format(Locale.US, "\n  %6d - %6d ms  %s: %d ms", (s.start - sOrigin) / 1000000,
+                    (s.end - sOrigin) / 1000000, e.getKey(), s.total / 1000000));
+            if (s.count > 1) r.append(" in ").append(s.count);
+        }
+        for (Map.Entry<String, Long> e : sMarks.entrySet()) {
+            r.append(String.format(Locale.US, "\n  %6d ms  %s", (e.getValue() - sOrigin) / 1000000, e.getKey()));
+        }
+        return r.toString();
+    }
+}
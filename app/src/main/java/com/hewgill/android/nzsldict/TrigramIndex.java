@@ -0,0 +1,146 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An inverted index from each three character sequence (trigram) to the sorted list of
+ * word indexes whose text contains it.
+ *
+ * The index is built over normalised text, which only contains characters below 127, so a
+ * trigram packs into a single int key. Any word containing a search term must contain every
+ * trigram of that term, so intersecting their posting lists gives a small candidate set that
+ * only needs to be checked with {@link String#contains}.
+ */
+class TrigramIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private static class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // ids are added in ascending order, so a repeat can only be the last entry
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private final Map<Integer, int[]> postings;
+
+    /**
+     * Build an index over one or more fields. Each array must be indexed by word, and a word
+     * is listed under a trigram if any of its fields contains it.
+     */
+    TrigramIndex(String[]... fields) {
+        Map<Integer, Posting> lists = new HashMap<>();
+        int n = fields[0].length;
+        for (int id = 0; id < n; id++) {
+            for (String[] field : fields) {
+                String s = field[id];
+                for (int i = 0; i + GRAM_LENGTH <= s.length(); i++) {
+                    Integer key = key(s, i);
+                    Posting p = lists.get(key);
+                    if (p == null) {
+                        p = new Posting();
+                        lists.put(key, p);
+                    }
+                    p.add(id);
+                }
+            }
+        }
+
+        postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, Posting> e : lists.entrySet()) {
+            Posting p = e.getValue();
+            postings.put(e.getKey(), Arrays.copyOf(p.ids, p.size));
+        }
+    }
+
+    private static int key(String s, int i) {
+        return (s.charAt(i) << 14) | (s.charAt(i + 1) << 7) | s.charAt(i + 2);
+    }
+
+    private static final Comparator<int[]> BY_LENGTH = new Comparator<int[]>() {
+        public int compare(int[] a, int[] b) {
+            return a.length - b.length;
+        }
+    };
+
+    /**
+     * Return the sorted indexes of words that may contain the normalised term, or null if the
+     * term is too short to be looked up and every word has to be considered.
+     */
+    int[] candidates(String term) {
+        int grams = term.length() - GRAM_LENGTH + 1;
+        if (grams <= 0) return null;
+
+        int[][] lists = new int[grams][];
+        for (int i = 0; i < grams; i++) {
+            int[] list = postings.get(key(term, i));
+            if (list == null) return EMPTY;
+            lists[i] = list;
+        }
+
+        // Intersect starting from the shortest list so the working set only shrinks. The
+        // intersection is written back into the copy of the first list as it goes.
+        Arrays.sort(lists, BY_LENGTH);
+        int[] result = lists[0].clone();
+        int size = result.length;
+        for (int i = 1; i < grams && size > 0; i++) {
+            if (lists[i] != lists[i - 1]) size = intersect(result, size, lists[i]);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static int intersect(int[] a, int size, int[] b) {
+        int i = 0, j = 0, k = 0;
+        while (i < size && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                a[k++] = a[i++];
+                j++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Return the words in both sorted candidate arrays. Either may be null, meaning every word
+     * is a candidate, in which case the other is returned.
+     */
+    static int[] intersection(int[] a, int[] b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        int[] r = a.clone();
+        int size = intersect(r, r.length, b);
+        return size == r.length ? r : Arrays.copyOf(r, size);
+    }
+
+    /**
+     * Merge two sorted candidate arrays. Either may be null, meaning every word is a
+     * candidate, in which case the union is also null.
+     */
+    static int[] union(int[] a, int[] b) {
+        if (a == null || b == null) return null;
+        int[] r = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) r[k++] = a[i++];
+            else if (a[i] > b[j]) r[k++] = b[j++];
+            else {
+                r[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) r[k++] = a[i++];
+        while (j < b.length) r[k++] = b[j++];
+        return k == r.length ? r : Arrays.copyOf(r, k);
+    }
+}
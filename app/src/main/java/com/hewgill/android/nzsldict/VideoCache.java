@@ -0,0 +1,454 @@
+package com.hewgill.android.nzsldict;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A bounded cache of sign videos on disk, so that a video only has to be downloaded once and
+ * can be replayed without a network connection.
+ *
+ * Each video is downloaded to a partial file, checked against the length the server
+ * reported and for a complete MP4 box structure, and only then renamed into place, so an
+ * interrupted or truncated download is never played. The contents of the boxes aren't
+ * checked, so a video the server sent corrupted would still be cached. When the cache grows
+ * past its size limit the least recently played videos are removed.
+ *
+ * A download can be limited to the start of the video. What was downloaded is kept in the
+ * partial file, and a later download of the video asks the server for the rest rather than
+ * starting again.
+ *
+ * Background downloads are made one at a time, in the order they were asked for unless one is
+ * asked to go first. Downloads that are no longer wanted can be cancelled, including the one
+ * in progress. A video that is about to be played is found with {@link #open}, which
+ * downloads it ahead of every other if it isn't cached yet, so each video played once can be
+ * played again offline.
+ */
+public class VideoCache {
+    private static final String PART_SUFFIX = ".part";
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final int MOOV = 0x6d6f6f76;
+
+    /**
+     * Called on the main thread with the result of {@link #open}.
+     */
+    public interface Callback {
+        void onOpened(File cached);
+    }
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // Background downloads waiting to start, in order, and the size limit for each. The
+    // download in progress is mCurrent, limited to mCurrentLimit, and is abandoned if
+    // mCancelCurrent is set.
+    private final Object mLock = new Object();
+    private final Deque<String> mQueue = new ArrayDeque<>();
+    private final Map<String, Long> mLimits = new HashMap<>();
+    private String mCurrent;
+    private long mCurrentLimit;
+    private boolean mCancelCurrent;
+    // Callbacks from open waiting for a video's background download to finish.
+    private final Map<String, List<Callback>> mWaiting = new HashMap<>();
+    private final ExecutorService mLookups = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public VideoCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        Thread downloader = new Thread(new Runnable() {
+            public void run() {
+                downloadQueued();
+            }
+        }, "video-cache");
+        downloader.setDaemon(true);
+        downloader.setPriority(Thread.NORM_PRIORITY - 1);
+        downloader.start();
+    }
+
+    private void downloadQueued() {
+        while (true) {
+            String url;
+            long maxBytes;
+            synchronized (mLock) {
+                while (mQueue.isEmpty()) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException x) {
+                        return;
+                    }
+                }
+                url = mQueue.removeFirst();
+                maxBytes = mLimits.remove(url);
+                mCurrent = url;
+                mCurrentLimit = maxBytes;
+                mCancelCurrent = false;
+            }
+            File f = null;
+            try {
+                f = fileFor(url);
+                if (!f.isFile()) {
+                    while (true) {
+                        f = download(url, maxBytes);
+                        synchronized (mLock) {
+                            // carry on if the limit was raised while the download was running
+                            if (f != null || mCancelCurrent || mCurrentLimit == maxBytes) break;
+                            maxBytes = mCurrentLimit;
+                        }
+                    }
+                }
+            } catch (IOException x) {
+                Log.d("videos", "failed to cache " + url + ": " + x.getMessage());
+                f = null;
+            } finally {
+                synchronized (mLock) {
+                    mCurrent = null;
+                    deliver(mWaiting.remove(url), f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the cached copy of the video, or null if it hasn't been downloaded. A video that
+     * is returned counts as recently used.
+     */
+    public File get(String url) {
+        File f = fileFor(url);
+        if (!f.isFile() || f.length() == 0) {
+            return null;
+        }
+        f.setLastModified(System.currentTimeMillis());
+        return f;
+    }
+
+    /**
+     * Find the video in the cache, without blocking the calling thread, to play it. If it
+     * isn't cached it is downloaded before any others, whatever its size, carrying on from
+     * anything already prefetched, and the callback is called when the download finishes. The
+     * callback is given null if the video couldn't be downloaded.
+     */
+    public void open(final String url, final Callback callback) {
+        mLookups.submit(new Runnable() {
+            public void run() {
+                File cached;
+                synchronized (mLock) {
+                    // A download renames its file into place before it stops being current, so
+                    // checking under the lock can't miss one that finishes meanwhile.
+                    cached = get(url);
+                    if (cached == null) {
+                        fetch(url, -1, true);
+                        List<Callback> waiting = mWaiting.get(url);
+                        if (waiting == null) {
+                            waiting = new ArrayList<>();
+                            mWaiting.put(url, waiting);
+                        }
+                        waiting.add(callback);
+                        return;
+                    }
+                }
+                deliver(Collections.singletonList(callback), cached);
+            }
+        });
+    }
+
+    private void deliver(final List<Callback> callbacks, final File cached) {
+        if (callbacks == null) return;
+        mMainHandler.post(new Runnable() {
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onOpened(cached);
+                }
+            }
+        });
+    }
+
+    /**
+     * Download the video into the cache in the background, unless it is already cached or
+     * being downloaded.
+     */
+    public void fetch(String url) {
+        fetch(url, -1);
+    }
+
+    /**
+     * Download the video into the cache in the background, unless it is already cached or
+     * being downloaded. If maxBytes is not negative, only that much of a larger video is
+     * downloaded, and kept for a later download to carry on from.
+     */
+    public void fetch(String url, long maxBytes) {
+        fetch(url, maxBytes, false);
+    }
+
+    /**
+     * Download the video into the cache in the background, unless it is already cached or
+     * being downloaded. If first is set, it is downloaded before any others waiting, even if
+     * it was already waiting. A download already waiting or in progress keeps the larger of
+     * its limit and maxBytes.
+     */
+    public void fetch(String url, long maxBytes, boolean first) {
+        synchronized (mLock) {
+            if (url.equals(mCurrent)) {
+                mCancelCurrent = false;
+                mCurrentLimit = larger(mCurrentLimit, maxBytes);
+                return;
+            }
+            boolean queued = mQueue.contains(url);
+            mLimits.put(url, queued ? larger(mLimits.get(url), maxBytes) : maxBytes);
+            if (queued && !first) return;
+            if (queued) mQueue.remove(url);
+            if (first) {
+                mQueue.addFirst(url);
+            } else {
+                mQueue.addLast(url);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stop downloading the video in the background, whether it is waiting or in progress.
+     */
+    public void cancel(String url) {
+        synchronized (mLock) {
+            if (mQueue.remove(url)) {
+                mLimits.remove(url);
+                deliver(mWaiting.remove(url), null);
+            }
+            if (url.equals(mCurrent)) mCancelCurrent = true;
+        }
+    }
+
+    /**
+     * Cancel the background downloads of every video not in the collection.
+     */
+    public void retain(Collection<String> urls) {
+        synchronized (mLock) {
+            for (String url : new ArrayList<>(mQueue)) {
+                if (!urls.contains(url)) cancel(url);
+            }
+            if (mCurrent != null && !urls.contains(mCurrent)) mCancelCurrent = true;
+        }
+    }
+
+    private static long larger(long limit, long maxBytes) {
+        return limit < 0 || maxBytes < 0 ? -1 : Math.max(limit, maxBytes);
+    }
+
+    private boolean cancelled(String url) {
+        synchronized (mLock) {
+            return mCancelCurrent && url.equals(mCurrent);
+        }
+    }
+
+    /**
+     * Download the video into the cache, replacing any cached copy, and return the cached
+     * file.
+     */
+    public File download(String url) throws IOException {
+        return download(url, -1);
+    }
+
+    /**
+     * Download the video into the cache, replacing any cached copy, and return the cached
+     * file. If maxBytes is not negative, only that much of a larger video is downloaded, and
+     * null is returned, as it is if the background download is cancelled. What was downloaded
+     * is kept, and the next download carries on from it.
+     */
+    public File download(String url, long maxBytes) throws IOException {
+        File f = fileFor(url);
+        File part = new File(mDirectory, f.getName() + PART_SUFFIX);
+        long start = part.length();
+        if (maxBytes >= 0 && start >= maxBytes) {
+            return null;
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (start > 0 || maxBytes >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (maxBytes >= 0 ? String.valueOf(maxBytes - 1) : ""));
+        }
+        try {
+            int status = connection.getResponseCode();
+            long expected;
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                String range = connection.getHeaderField("Content-Range");
+                long[] r = contentRange(range);
+                if (r == null || r[0] != start) {
+                    part.delete();
+                    throw new IOException("unexpected range " + range);
+                }
+                expected = r[1];
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                // the server ignored the range and is sending the whole video
+                start = 0;
+                expected = connection.getContentLength();
+            } else {
+                if (status == 416) {
+                    // the part downloaded before doesn't fit the video any more
+                    part.delete();
+                }
+                throw new IOException("unexpected response " + status);
+            }
+
+            mDirectory.mkdirs();
+            long written = start;
+            boolean ended = false;
+            InputStream in = connection.getInputStream();
+            FileOutputStream out = new FileOutputStream(part, start > 0);
+            try {
+                byte[] buf = new byte[16384];
+                while (!(maxBytes >= 0 && written >= maxBytes) && !cancelled(url)) {
+                    int n = in.read(buf, 0, maxBytes >= 0 ? (int) Math.min(buf.length, maxBytes - written) : buf.length);
+                    if (n < 0) {
+                        ended = true;
+                        break;
+                    }
+                    out.write(buf, 0, n);
+                    written += n;
+                }
+                out.getFD().sync();
+            } finally {
+                out.close();
+                in.close();
+            }
+
+            boolean limited = maxBytes >= 0 && written >= maxBytes;
+            if (expected >= 0 ? written < expected && (limited || !ended) : limited || !ended) {
+                // stopped at the limit or cancelled, with the rest still to come
+                return null;
+            }
+            if (written == 0 || (expected >= 0 && written != expected)) {
+                if (written > expected) part.delete();
+                throw new IOException("expected " + expected + " bytes but received " + written);
+            }
+            if (!isCompleteMp4(part)) {
+                part.delete();
+                throw new IOException("incomplete MP4 file");
+            }
+            if (!part.renameTo(f)) {
+                part.delete();
+                throw new IOException("could not move download into the cache");
+            }
+            trim();
+            return f;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Parse a Content-Range header, "bytes first-last/length", into the first byte and the
+     * length of the whole video, which is -1 if the server didn't say.
+     */
+    private static long[] contentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) return null;
+        int dash = header.indexOf('-');
+        int slash = header.indexOf('/');
+        if (dash < 0 || slash < dash) return null;
+        try {
+            String length = header.substring(slash + 1).trim();
+            return new long[] {
+                    Long.parseLong(header.substring(6, dash).trim()),
+                    length.equals("*") ? -1 : Long.parseLong(length)
+            };
+        } catch (NumberFormatException x) {
+            return null;
+        }
+    }
+
+    /**
+     * Remove the least recently used videos until the cache fits in its size limit.
+     */
+    synchronized void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= mMaxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long d = a.lastModified() - b.lastModified();
+                return d < 0 ? -1 : d > 0 ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < files.length && total > mMaxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) total -= length;
+        }
+    }
+
+    /**
+     * Whether the file is a sequence of MP4 boxes that exactly fills it, including the movie
+     * box that describes the tracks. A download that was cut short, even if the server didn't
+     * say how long it was, ends part way through a box.
+     */
+    static boolean isCompleteMp4(File f) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(f, "r");
+        try {
+            long length = in.length();
+            long offset = 0;
+            boolean movie = false;
+            while (offset < length) {
+                if (length - offset < 8) return false;
+                in.seek(offset);
+                long size = in.readInt() & 0xffffffffL;
+                int type = in.readInt();
+                if (size == 1) {
+                    if (length - offset < 16) return false;
+                    size = in.readLong();
+                } else if (size == 0) {
+                    // the last box runs to the end of the file
+                    size = length - offset;
+                }
+                if (size < 8 || size > length - offset) return false;
+                if (type == MOOV) movie = true;
+                offset += size;
+            }
+            return movie;
+        } finally {
+            in.close();
+        }
+    }
+
+    private File fileFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(mDirectory, name.toString());
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException x) {
+            // shouldn't happen, both are always available
+            throw new IllegalStateException(x);
+        }
+    }
+}
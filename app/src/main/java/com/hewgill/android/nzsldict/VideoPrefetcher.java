@@ -0,0 +1,70 @@
+package com.hewgill.android.nzsldict;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.util.Collection;
+
+/**
+ * Downloads sign videos into the video cache before they are asked for, such as while a word
+ * is showing its illustration, so that they play straight away from the cache.
+ *
+ * Only the start of each video, up to a byte budget, is prefetched, so a short video is
+ * cached whole and a long one has its first part downloaded already when it is opened. The
+ * budget is smaller on metered networks, and nothing is prefetched when the user has turned on
+ * Data Saver.
+ */
+public class VideoPrefetcher {
+    private static final long UNMETERED_BUDGET_BYTES = 8 * 1024 * 1024;
+    private static final long METERED_BUDGET_BYTES = 1024 * 1024;
+
+    private final ConnectivityManager mConnectivityManager;
+    private final VideoCache mCache;
+
+    public VideoPrefetcher(Context context, VideoCache cache) {
+        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        mCache = cache;
+    }
+
+    public void prefetch(String url) {
+        prefetch(url, false);
+    }
+
+    /**
+     * Prefetch the video, before any others waiting if first is set.
+     */
+    public void prefetch(String url, boolean first) {
+        long budget = budget();
+        if (budget > 0) {
+            mCache.fetch(url, budget, first);
+        }
+    }
+
+    /**
+     * Stop prefetching every video not in the collection, such as those of words that have
+     * been paged away from.
+     */
+    public void retain(Collection<String> urls) {
+        mCache.retain(urls);
+    }
+
+    /**
+     * How much of each video to prefetch on the current network, or 0 to not prefetch at all.
+     */
+    long budget() {
+        NetworkInfo network = mConnectivityManager.getActiveNetworkInfo();
+        if (network == null || !network.isConnected()) {
+            return 0;
+        }
+        if (!ConnectivityManagerCompat.isActiveNetworkMetered(mConnectivityManager)) {
+            return UNMETERED_BUDGET_BYTES;
+        }
+        if (ConnectivityManagerCompat.getRestrictBackgroundStatus(mConnectivityManager)
+                == ConnectivityManagerCompat.RESTRICT_BACKGROUND_STATUS_ENABLED) {
+            return 0;
+        }
+        return METERED_BUDGET_BYTES;
+    }
+}
@@ -2,24 +2,23 @@ package com.hewgill.android.nzsldict;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.support.design.widget.TabLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
-import android.support.v4.app.FragmentPagerAdapter;
+import android.support.v4.app.FragmentStatePagerAdapter;
 import android.support.v4.view.ViewPager;
-import android.widget.TextView;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class WordActivity extends BaseActivity {
 
-    private TextView gloss;
-    private TextView minor;
-    private TextView maori;
-    private SignVideoFragment mVideoFragment;
+    // How many words either side of the current one are kept ready to show.
+    private static final int PREFETCH_WINDOW = 2;
+
     private ViewPager viewPager;
-    private Dictionary.DictItem item;
+    private int[] ids;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -27,82 +26,86 @@ public class WordActivity extends BaseActivity {
         setContentView(R.layout.word);
         setupAppToolbar();
         Intent intent = getIntent();
-        item = (Dictionary.DictItem) intent.getSerializableExtra("item");
-
-        gloss = (TextView) findViewById(R.id.gloss);
-        minor = (TextView) findViewById(R.id.minor);
-        maori = (TextView) findViewById(R.id.maori);
-        viewPager = (ViewPager) findViewById(R.id.sign_media_pager);
-        setupSignMediaPager(viewPager);
-        TabLayout tabLayout = (TabLayout) findViewById(R.id.sign_tabs);
-        tabLayout.setupWithViewPager(viewPager);
+        int id = intent.getIntExtra("id", -1);
+        ids = intent.getIntArrayExtra("ids");
+        int position = intent.getIntExtra("position", 0);
+        if (ids == null || position < 0 || position >= ids.length || ids[position] != id) {
+            // Without the results to page through, just show the one word.
+            ids = new int[] {id};
+            position = 0;
+        }
 
-        gloss.setText(item.gloss);
-        minor.setText(item.minor);
-        maori.setText(item.maori);
+        viewPager = (ViewPager) findViewById(R.id.word_pager);
+        viewPager.setOffscreenPageLimit(PREFETCH_WINDOW);
+        viewPager.setAdapter(new WordPagerAdapter(getSupportFragmentManager()));
+        viewPager.setCurrentItem(position);
+        viewPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageSelected(int position) {
+                prefetch(position);
+            }
+        });
+        // The neighbours' illustrations are decoded at the size the current one is shown at,
+        // which is known once the pages have been laid out.
+        viewPager.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            public boolean onPreDraw() {
+                viewPager.getViewTreeObserver().removeOnPreDrawListener(this);
+                prefetch(viewPager.getCurrentItem());
+                return true;
+            }
+        });
     }
 
-    private void setupSignMediaPager(ViewPager viewPager) {
-        ViewPagerAdapter adapter = new ViewPagerAdapter(getSupportFragmentManager());
-        adapter.addFragment(SignIllustrationFragment.newInstance(item), "Illustration");
-        mVideoFragment = SignVideoFragment.newInstance(item);
-        adapter.addFragment(mVideoFragment, "Video");
-        viewPager.addOnPageChangeListener(new WordPageChangeListener(viewPager));
-        viewPager.setAdapter(adapter);
+    private Dictionary.DictItem wordAt(int position) {
+        return Application.get(this).getWord(ids[position]);
     }
 
-    class ViewPagerAdapter extends FragmentPagerAdapter {
-        private final List<Fragment> mFragmentList = new ArrayList<>();
-        private final List<String> mFragmentTitleList = new ArrayList<>();
-
-        public ViewPagerAdapter(FragmentManager manager) {
-            super(manager);
-        }
-
-        @Override
-        public Fragment getItem(int position) {
-            return mFragmentList.get(position);
-        }
-
-        @Override
-        public int getCount() {
-            return mFragmentList.size();
+    /**
+     * Get the words around the current one ready, so that paging to one shows its
+     * illustration straight away and its video has already started downloading. Pages
+     * further away than this are destroyed by the pager, and their videos stop downloading.
+     */
+    private void prefetch(int position) {
+        ImageLoader imageLoader = Application.get(this).getImageLoader();
+        VideoPrefetcher videoPrefetcher = Application.get(this).getVideoPrefetcher();
+        List<String> videos = new ArrayList<>();
+        videos.add(wordAt(position).video());
+        for (int d = 1; d <= PREFETCH_WINDOW; d++) {
+            for (int p : new int[] {position - d, position + d}) {
+                if (p >= 0 && p < ids.length) videos.add(wordAt(p).video());
+            }
         }
-
-        public void addFragment(Fragment fragment, String title) {
-            mFragmentList.add(fragment);
-            mFragmentTitleList.add(title);
+        videoPrefetcher.retain(videos);
+        // Start downloading the current word's video while its illustration is showing, so
+        // it is ready to play when the video tab is selected, then the nearest neighbours'.
+        videoPrefetcher.prefetch(videos.get(0), true);
+        for (int i = 1; i < videos.size(); i++) {
+            videoPrefetcher.prefetch(videos.get(i));
         }
 
-        @Override
-        public CharSequence getPageTitle(int position) {
-            return mFragmentTitleList.get(position);
+        View illustration = viewPager.findViewById(R.id.sign_illustration);
+        if (illustration == null || illustration.getWidth() == 0 || illustration.getHeight() == 0) return;
+        for (int d = 1; d <= PREFETCH_WINDOW; d++) {
+            for (int p : new int[] {position - d, position + d}) {
+                if (p < 0 || p >= ids.length) continue;
+                imageLoader.preload(wordAt(p).imagePath(), illustration.getWidth(), illustration.getHeight());
+            }
         }
     }
 
-    private class WordPageChangeListener implements ViewPager.OnPageChangeListener {
-        private final ViewPager mPager;
-
-        private WordPageChangeListener(ViewPager pager) {
-            mPager = pager;
-        }
-        @Override
-        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+    class WordPagerAdapter extends FragmentStatePagerAdapter {
+        public WordPagerAdapter(FragmentManager manager) {
+            super(manager);
         }
 
         @Override
-        public void onPageSelected(int position) {
-            ViewPagerAdapter vpa = (ViewPagerAdapter) mPager.getAdapter();
-            if (vpa.getPageTitle(position).equals("Video")) {
-                mVideoFragment.showControls();
-            } else {
-                mVideoFragment.stop();
-            }
+        public Fragment getItem(int position) {
+            return WordFragment.newInstance(ids[position]);
         }
 
         @Override
-        public void onPageScrollStateChanged(int state) {
-
+        public int getCount() {
+            return ids.length;
         }
     }
 }
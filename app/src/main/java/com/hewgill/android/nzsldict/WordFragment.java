@@ -0,0 +1,158 @@
+package com.hewgill.android.nzsldict;
+
+import android.os.Bundle;
+import android.support.design.widget.TabLayout;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.support.v4.app.FragmentPagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Shows a single word: its glosses, and tabs for its illustration and video.
+ * Use the {@link WordFragment#newInstance} factory method to
+ * create an instance of this fragment.
+ */
+public class WordFragment extends Fragment {
+    private static final String ARG_WORD_ID = "wordId";
+    private Dictionary.DictItem mDictItem;
+    private ViewPager mMediaPager;
+
+    public WordFragment() {
+        // Required empty public constructor
+    }
+
+    /**
+     * Use this factory method to create a new instance of
+     * this fragment using the provided parameters.
+     *
+     * @param wordId The id of the dictItem to use as the context for the fragment
+     * @return A new instance of fragment WordFragment.
+     */
+    public static WordFragment newInstance(int wordId) {
+        WordFragment fragment = new WordFragment();
+        Bundle args = new Bundle();
+        args.putInt(ARG_WORD_ID, wordId);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (getArguments() != null) {
+            mDictItem = Application.get(getContext()).getWord(getArguments().getInt(ARG_WORD_ID));
+        }
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        View rootView = inflater.inflate(R.layout.fragment_word, container, false);
+        ((TextView) rootView.findViewById(R.id.gloss)).setText(mDictItem.gloss());
+        ((TextView) rootView.findViewById(R.id.minor)).setText(mDictItem.minor());
+        ((TextView) rootView.findViewById(R.id.maori)).setText(mDictItem.maori());
+
+        mMediaPager = (ViewPager) rootView.findViewById(R.id.sign_media_pager);
+        setupSignMediaPager(mMediaPager);
+        TabLayout tabLayout = (TabLayout) rootView.findViewById(R.id.sign_tabs);
+        tabLayout.setupWithViewPager(mMediaPager);
+        return rootView;
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        // When paged away from, go back to the illustration, which also stops the video.
+        if (!isVisibleToUser && mMediaPager != null) {
+            mMediaPager.setCurrentItem(0);
+        }
+    }
+
+    private void setupSignMediaPager(ViewPager viewPager) {
+        ViewPagerAdapter adapter = new ViewPagerAdapter(getChildFragmentManager());
+        adapter.addFragment(SignIllustrationFragment.newInstance(mDictItem.id), "Illustration");
+        adapter.addFragment(SignVideoFragment.newInstance(mDictItem.id), "Video");
+        viewPager.addOnPageChangeListener(new WordPageChangeListener(viewPager));
+        viewPager.setAdapter(adapter);
+    }
+
+    class ViewPagerAdapter extends FragmentPagerAdapter {
+        private final List<Fragment> mFragmentList = new ArrayList<>();
+        private final List<String> mFragmentTitleList = new ArrayList<>();
+
+        public ViewPagerAdapter(FragmentManager manager) {
+            super(manager);
+        }
+
+        @Override
+        public Fragment getItem(int position) {
+            return mFragmentList.get(position);
+        }
+
+        @Override
+        public int getCount() {
+            return mFragmentList.size();
+        }
+
+        public void addFragment(Fragment fragment, String title) {
+            mFragmentList.add(fragment);
+            mFragmentTitleList.add(title);
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return mFragmentTitleList.get(position);
+        }
+    }
+
+    /**
+     * Return the video tab's fragment if it has been added. When this fragment is restored
+     * from its saved state, the pager reuses the restored child fragments rather than the ones
+     * given to its adapter, so it has to be looked up each time.
+     */
+    private SignVideoFragment videoFragment() {
+        if (!isAdded()) return null;
+        List<Fragment> fragments = getChildFragmentManager().getFragments();
+        if (fragments == null) return null;
+        for (Fragment f : fragments) {
+            if (f instanceof SignVideoFragment && f.isAdded()) return (SignVideoFragment) f;
+        }
+        return null;
+    }
+
+    private class WordPageChangeListener implements ViewPager.OnPageChangeListener {
+        private final ViewPager mPager;
+
+        private WordPageChangeListener(ViewPager pager) {
+            mPager = pager;
+        }
+        @Override
+        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        }
+
+        @Override
+        public void onPageSelected(int position) {
+            SignVideoFragment video = videoFragment();
+            if (video == null) return;
+            ViewPagerAdapter vpa = (ViewPagerAdapter) mPager.getAdapter();
+            if (vpa.getPageTitle(position).equals("Video")) {
+                video.showControls();
+            } else {
+                video.stop();
+            }
+        }
+
+        @Override
+        public void onPageScrollStateChanged(int state) {
+
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.hewgill.android.nzsldict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dictionary's words, stored a column per field rather than an object per word.
+ *
+ * The text fields are pooled so each distinct string is held once however many words use it.
+ * Handshape and location have few distinct values, so each word stores them as a one byte
+ * code into a table of values, along with the drawable names for each value worked out once
+ * rather than on every call. Dictionary.DictItem is a view of one row.
+ *
+ * Videos can be left out when the words are added and read from a Column the first time each
+ * is asked for instead.
+ */
+class WordStore {
+    // Codes are stored in a byte and read back unsigned.
+    private static final int MAX_CODES = 256;
+
+    final String[] gloss;
+    final String[] minor;
+    final String[] maori;
+    final String[] image;
+    private final String[] video;
+    private final Column videos;
+    final byte[] handshape;
+    final byte[] location;
+
+    private final String[] handshapeValues;
+    private final String[] handshapeImages;
+    private final Map<String, Integer> handshapeCodes;
+    private final String[] locationValues;
+    private final String[] locationImages;
+    private final Map<String, Integer> locationCodes;
+
+    private WordStore(Builder b) {
+        int n = b.size;
+        gloss = Arrays.copyOf(b.gloss, n);
+        minor = Arrays.copyOf(b.minor, n);
+        maori = Arrays.copyOf(b.maori, n);
+        image = Arrays.copyOf(b.image, n);
+        video = Arrays.copyOf(b.video, n);
+        videos = b.videos;
+        handshape = Arrays.copyOf(b.handshape, n);
+        location = Arrays.copyOf(b.location, n);
+
+        handshapeValues = b.handshapeValues.toArray(new String[0]);
+        handshapeCodes = b.handshapeCodes;
+        handshapeImages = new String[handshapeValues.length];
+        for (int c = 0; c < handshapeValues.length; c++) {
+            handshapeImages[c] = "handshape_" + handshapeValues[c].replace('.', '_');
+        }
+        locationValues = b.locationValues.toArray(new String[0]);
+        locationCodes = b.locationCodes;
+        locationImages = new String[locationValues.length];
+        for (int c = 0; c < locationValues.length; c++) {
+            String r = Dictionary.DictItem.Locations.get(locationValues[c]);
+            locationImages[c] = r != null ? r : "";
+        }
+    }
+
+    /**
+     * A store holding a single word.
+     */
+    static WordStore of(String gloss, String minor, String maori, String image, String video, String handshape, String location) {
+        Builder b = new Builder(1);
+        b.add(gloss, minor, maori, image, video, handshape, location);
+        return b.build();
+    }
+
+    int size() {
+        return gloss.length;
+    }
+
+    String video(int i) {
+        String v = video[i];
+        if (v == null && videos != null) {
+            // Racing threads read the same value, so whichever one stores it doesn't matter.
+            v = videos.get(i);
+            video[i] = v;
+        }
+        return v;
+    }
+
+    String handshape(int i) {
+        return handshapeValues[handshape[i] & 0xff];
+    }
+
+    String handshapeImage(int i) {
+        return handshapeImages[handshape[i] & 0xff];
+    }
+
+    String location(int i) {
+        return locationValues[location[i] & 0xff];
+    }
+
+    String locationImage(int i) {
+        return locationImages[location[i] & 0xff];
+    }
+
+    /**
+     * The number of distinct handshapes, which codes run up to.
+     */
+    int handshapeCount() {
+        return handshapeValues.length;
+    }
+
+    int locationCount() {
+        return locationValues.length;
+    }
+
+    /**
+     * Return the code for the handshape, or -1 if no word has it.
+     */
+    int handshapeCode(String value) {
+        Integer c = handshapeCodes.get(value);
+        return c != null ? c : -1;
+    }
+
+    int locationCode(String value) {
+        Integer c = locationCodes.get(value);
+        return c != null ? c : -1;
+    }
+
+    /**
+     * A field read for one row at a time.
+     */
+    interface Column {
+        String get(int row);
+    }
+
+    /**
+     * Adds words in order, pooling their strings, and then builds the store.
+     */
+    static class Builder {
+        private int size;
+        private String[] gloss;
+        private String[] minor;
+        private String[] maori;
+        private String[] image;
+        private String[] video;
+        private byte[] handshape;
+        private byte[] location;
+        private Column videos;
+
+        private final Map<String, String> pool = new HashMap<>();
+        private final List<String> handshapeValues = new ArrayList<>();
+        private final Map<String, Integer> handshapeCodes = new HashMap<>();
+        private final List<String> locationValues = new ArrayList<>();
+        private final Map<String, Integer> locationCodes = new HashMap<>();
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            gloss = new String[capacity];
+            minor = new String[capacity];
+            maori = new String[capacity];
+            image = new String[capacity];
+            video = new String[capacity];
+            handshape = new byte[capacity];
+            location = new byte[capacity];
+        }
+
+        Builder add(String gloss, String minor, String maori, String image, String video, String handshape, String location) {
+            if (size == this.gloss.length) {
+                grow();
+            }
+            this.gloss[size] = intern(gloss);
+            this.minor[size] = intern(minor);
+            this.maori[size] = intern(maori);
+            this.image[size] = intern(image);
+            this.video[size] = video != null ? intern(video) : null;
+            this.handshape[size] = code(handshape, handshapeValues, handshapeCodes);
+            this.location[size] = code(location, locationValues, locationCodes);
+            size++;
+            return this;
+        }
+
+        /**
+         * Read the videos of words added without one from the column.
+         */
+        Builder videos(Column videos) {
+            this.videos = videos;
+            return this;
+        }
+
+        WordStore build() {
+            return new WordStore(this);
+        }
+
+        private String intern(String s) {
+            String p = pool.get(s);
+            if (p == null) {
+                pool.put(s, s);
+                p = s;
+            }
+            return p;
+        }
+
+        private static byte code(String value, List<String> values, Map<String, Integer> codes) {
+            Integer c = codes.get(value);
+            if (c == null) {
+                if (values.size() == MAX_CODES) {
+                    throw new IllegalStateException("more than " + MAX_CODES + " distinct values, at " + value);
+                }
+                c = values.size();
+                values.add(value);
+                codes.put(value, c);
+            }
+            return (byte) (int) c;
+        }
+
+        private void grow() {
+            int n = gloss.length * 2;
+            gloss = Arrays.copyOf(gloss, n);
+            minor = Arrays.copyOf(minor, n);
+            maori = Arrays.copyOf(maori, n);
+            image = Arrays.copyOf(image, n);
+            video = Arrays.copyOf(video, n);
+            handshape = Arrays.copyOf(handshape, n);
+            location = Arrays.copyOf(location, n);
+        }
+    }
+}
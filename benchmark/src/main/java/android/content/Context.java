@@ -0,0 +1,27 @@
+package android.content;
+
+import android.content.res.AssetManager;
+
+/**
+ * Just enough of Android's Context for the dictionary to be loaded on the JVM, with its
+ * assets read from a list of directories. By default these are the directories in the
+ * nzsl.assets system property.
+ */
+public class Context {
+    private final AssetManager assets;
+
+    public Context() {
+        this(System.getProperty("nzsl.assets", ""));
+    }
+
+    /**
+     * Read assets from the directories in the path separated list.
+     */
+    public Context(String assetDirectories) {
+        assets = new AssetManager(assetDirectories);
+    }
+
+    public AssetManager getAssets() {
+        return assets;
+    }
+}
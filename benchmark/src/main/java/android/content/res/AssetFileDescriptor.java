@@ -0,0 +1,28 @@
+package android.content.res;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * An uncompressed asset, which covers the whole of its file.
+ */
+public class AssetFileDescriptor {
+    private final File file;
+
+    AssetFileDescriptor(File file) {
+        this.file = file;
+    }
+
+    public FileInputStream createInputStream() throws IOException {
+        return new FileInputStream(file);
+    }
+
+    public long getStartOffset() {
+        return 0;
+    }
+
+    public long getLength() {
+        return file.length();
+    }
+}
@@ -0,0 +1,37 @@
+package android.content.res;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads assets from a list of directories, searched in order, the way the app's asset
+ * source sets are merged when it is built.
+ */
+public class AssetManager {
+    private final String[] roots;
+
+    public AssetManager(String roots) {
+        this.roots = roots.split(File.pathSeparator);
+    }
+
+    public InputStream open(String fileName) throws IOException {
+        return new FileInputStream(find(fileName));
+    }
+
+    public AssetFileDescriptor openFd(String fileName) throws IOException {
+        return new AssetFileDescriptor(find(fileName));
+    }
+
+    private File find(String fileName) throws FileNotFoundException {
+        for (String root : roots) {
+            File f = new File(root, fileName);
+            if (f.isFile()) {
+                return f;
+            }
+        }
+        throw new FileNotFoundException(fileName);
+    }
+}
@@ -0,0 +1,13 @@
+package android.util;
+
+/**
+ * Discards log messages, so that logging doesn't show up in the measurements.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The worst case for keyword search: short, common terms that are contained in a large part
+ * of the dictionary, so that most words have to be checked and sorted into the results.
+ * Reading just the first page of results should take about as long for any of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadSearchBenchmark {
+    @Param({"e", "a", " ", "er", "in", "the"})
+    public String term;
+
+    // The number of results the word list reads at a time.
+    private static final int PAGE_SIZE = 30;
+
+    private Dictionary dictionary;
+
+    @Setup
+    public void load() {
+        dictionary = new Dictionary(new Context());
+        // as the app does once the dictionary has loaded
+        dictionary.buildFuzzyIndex();
+    }
+
+    @Benchmark
+    public List<Dictionary.DictItem> getWords() {
+        return dictionary.getWords(term);
+    }
+
+    @Benchmark
+    public List<Dictionary.DictItem> firstPage() {
+        return dictionary.getWordsCursor(term).next(PAGE_SIZE);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering by handshape and location as the gallery does, including no filter at all and
+ * the most common handshape and location, which give the largest results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GalleryBenchmark {
+    @Param({"", "1.1.1", "3.3.1"})
+    public String handshape;
+
+    @Param({"", "in front of body", "chest"})
+    public String location;
+
+    private Dictionary dictionary;
+
+    @Setup
+    public void load() {
+        dictionary = new Dictionary(new Context());
+    }
+
+    @Benchmark
+    public List<Dictionary.DictItem> getWordsByHandshape() {
+        return dictionary.getWordsByHandshape(handshape, location);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+import com.hewgill.android.nzsldict.SearchSession;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword searches as they are typed, from a single character through to a whole word, and
+ * misspelt words, which find few matches and so look for near misses too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordSearchBenchmark {
+    @Param({"h", "ho", "hou", "hous", "house", "auckland", "whānau", "zzzz", "sunglases", "wellingon"})
+    public String term;
+
+    private Dictionary dictionary;
+
+    @Setup
+    public void load() {
+        dictionary = new Dictionary(new Context());
+        // as the app does once the dictionary has loaded
+        dictionary.buildFuzzyIndex();
+    }
+
+    @Benchmark
+    public List<Dictionary.DictItem> getWords() {
+        return dictionary.getWords(term);
+    }
+
+    /**
+     * Typing the term one character at a time, which lets a search session narrow each
+     * search down from the one before.
+     */
+    @Benchmark
+    public List<Dictionary.DictItem> typeTerm() {
+        SearchSession session = new SearchSession(dictionary);
+        List<Dictionary.DictItem> r = null;
+        for (int i = 1; i <= term.length(); i++) {
+            r = session.getWords(term.substring(0, i));
+        }
+        return r;
+    }
+}
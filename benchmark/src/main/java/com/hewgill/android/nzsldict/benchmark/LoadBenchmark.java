@@ -0,0 +1,41 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the dictionary, from the compiled word list the app ships with and from the text
+ * word list, which has to be parsed and sorted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+    private final Context context = new Context();
+
+    @Benchmark
+    public Dictionary compiledWordList() {
+        return new Dictionary(context);
+    }
+
+    @Benchmark
+    public Dictionary textWordList() {
+        return Dictionary.fromWordList(context);
+    }
+}
@@ -0,0 +1,153 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates word lists in the same format as nzsl.dat, but many times larger, for measuring
+ * how the dictionary scales as signs are added.
+ *
+ * Each generated word is modelled on a word from the real list. Its gloss, minor and maori
+ * fields keep the shape of the real ones (length in words, parentheses, commas), but each word
+ * in them is swapped for another from the same field of the real list, and sometimes given an
+ * extra syllable so the vocabulary grows too. Macrons come along with the maori words they
+ * are in. The handshape and location are the real word's, so their spread is the same, and
+ * every word gets its own image and video.
+ *
+ * The output for a given word list, scale and seed is always the same.
+ */
+public class SyntheticWordList {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Pattern WORD = Pattern.compile("\\p{L}+");
+    private static final String[] SYLLABLES = {"a", "e", "i", "o", "u", "ka", "ko", "ri", "ta", "wha", "nga", "ā", "ō"};
+    private static final double REPLACE_WORD = 0.6;
+    private static final double ADD_SYLLABLE = 0.3;
+
+    private final List<String[]> words;
+    private final List<List<String>> vocabularies = new ArrayList<>();
+
+    public SyntheticWordList(File wordList) throws IOException {
+        words = read(wordList);
+        for (int field = 0; field < 3; field++) {
+            List<String> vocabulary = new ArrayList<>();
+            for (String[] a : words) {
+                Matcher m = WORD.matcher(a[field]);
+                while (m.find()) {
+                    vocabulary.add(m.group());
+                }
+            }
+            vocabularies.add(vocabulary);
+        }
+    }
+
+    /**
+     * The number of words in the real word list.
+     */
+    public int size() {
+        return words.size();
+    }
+
+    /**
+     * Write a word list scale times the size of the real one.
+     */
+    public void write(File destination, int scale, long seed) throws IOException {
+        Random random = new Random(seed);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(destination), UTF8));
+        try {
+            int n = words.size() * scale;
+            for (int i = 0; i < n; i++) {
+                String[] a = words.get(random.nextInt(words.size()));
+                String gloss = vary(a[0], 0, random);
+                int id = 100000 + i;
+                String name = firstWord(gloss).toLowerCase();
+                out.write(gloss);
+                out.write('\t');
+                out.write(vary(a[1], 1, random));
+                out.write('\t');
+                out.write(vary(a[2], 2, random));
+                out.write('\t');
+                out.write(name + "_" + id + "_high_resolution.png");
+                out.write('\t');
+                out.write("http://freelex.nzsl.vuw.ac.nz/dnzsl/freelex/assets/" + id + "/" + name + "." + id + ".main_glosses.mb.r480x360.mp4");
+                out.write('\t');
+                out.write(a[5]);
+                out.write('\t');
+                out.write(a[6]);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private String vary(String s, int field, Random random) {
+        List<String> vocabulary = vocabularies.get(field);
+        Matcher m = WORD.matcher(s);
+        StringBuffer r = new StringBuffer(s.length() + 8);
+        while (m.find()) {
+            String word = m.group();
+            if (random.nextDouble() < REPLACE_WORD) {
+                word = vocabulary.get(random.nextInt(vocabulary.size()));
+            }
+            if (random.nextDouble() < ADD_SYLLABLE) {
+                word += SYLLABLES[random.nextInt(SYLLABLES.length)];
+            }
+            m.appendReplacement(r, Matcher.quoteReplacement(word));
+        }
+        m.appendTail(r);
+        return r.toString();
+    }
+
+    private static String firstWord(String s) {
+        Matcher m = WORD.matcher(s);
+        return m.find() ? m.group() : "sign";
+    }
+
+    private static List<String[]> read(File wordList) throws IOException {
+        List<String[]> words = new ArrayList<>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(wordList), UTF8));
+        try {
+            String s;
+            while ((s = in.readLine()) != null) {
+                words.add(s.split("\t", -1));
+            }
+        } finally {
+            in.close();
+        }
+        return words;
+    }
+
+    /**
+     * Usage: SyntheticWordList word-list output-directory scale...
+     *
+     * Writes nzsl-Nx.dat into the output directory for each scale N.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: SyntheticWordList word-list output-directory scale...");
+            System.exit(2);
+        }
+        SyntheticWordList generator = new SyntheticWordList(new File(args[0]));
+        File directory = new File(args[1]);
+        directory.mkdirs();
+        for (int i = 2; i < args.length; i++) {
+            int scale = Integer.parseInt(args[i]);
+            File f = new File(directory, "nzsl-" + scale + "x.dat");
+            generator.write(f, scale, scale);
+            System.out.println("wrote " + generator.size() * scale + " words to " + f);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.hewgill.android.nzsldict.benchmark;
+
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Choosing the word of the day, which is done every time the main screen is shown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordOfTheDayBenchmark {
+    private Dictionary dictionary;
+
+    @Setup
+    public void load() {
+        dictionary = new Dictionary(new Context());
+    }
+
+    @Benchmark
+    public Dictionary.DictItem getWordOfTheDay() {
+        return dictionary.getWordOfTheDay();
+    }
+}
@@ -0,0 +1,163 @@
+import android.content.Context;
+
+import com.hewgill.android.nzsldict.Dictionary;
+import com.hewgill.android.nzsldict.benchmark.SyntheticWordList;
+import com.hewgill.android.nzsldict.gradle.DictionaryCompiler;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that loading and searching the dictionary stay within budget on synthetic word lists
+ * 10, 50 and 100 times the size of the real one, and that their cost per word doesn't grow
+ * with the size of the dictionary. Budgets are per word, with room for slower machines.
+ */
+public class DictionaryScalingTest {
+    private static final int[] SCALES = {10, 50, 100};
+
+    private static final long LOAD_NANOS_PER_WORD = 40000;
+    private static final long TEXT_LOAD_NANOS_PER_WORD = 50000;
+    private static final long RETAINED_BYTES_PER_WORD = 1000;
+    private static final long SEARCH_NANOS_PER_WORD = 2000;
+
+    // How much worse than at the smallest scale the cost per word may get at larger ones.
+    private static final double MAX_TIME_GROWTH = 2.5;
+    private static final double MAX_MEMORY_GROWTH = 1.25;
+
+    // Short terms that match much of the dictionary, typing a word, and a term matching nothing.
+    private static final String[] TERMS = {"h", "ho", "hou", "hous", "house", "e", "in", "whānau", "zzzz"};
+
+    private static File sDirectory;
+    private static int sRealSize;
+
+    @BeforeClass
+    public static void generateWordLists() throws IOException {
+        sDirectory = File.createTempFile("scaling", "");
+        sDirectory.delete();
+        SyntheticWordList generator = new SyntheticWordList(new File(System.getProperty("nzsl.wordList")));
+        sRealSize = generator.size();
+        for (int scale : SCALES) {
+            File db = new File(assets(scale), "db");
+            db.mkdirs();
+            File wordList = new File(db, "nzsl.dat");
+            generator.write(wordList, scale, scale);
+            DictionaryCompiler.compile(wordList, new File(db, "nzsl.bin"));
+        }
+    }
+
+    @AfterClass
+    public static void deleteWordLists() {
+        deleteRecursively(sDirectory);
+    }
+
+    private static File assets(int scale) {
+        return new File(sDirectory, scale + "x");
+    }
+
+    private static Context context(int scale) {
+        return new Context(assets(scale).getPath());
+    }
+
+    private static void deleteRecursively(File f) {
+        File[] files = f.listFiles();
+        if (files != null) {
+            for (File child : files) deleteRecursively(child);
+        }
+        f.delete();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The best of a few timings of loading the dictionary, in nanoseconds per word.
+     */
+    private static double loadTime(int scale, boolean compiled) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            Dictionary dictionary = compiled ? new Dictionary(context(scale)) : Dictionary.fromWordList(context(scale));
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(sRealSize * scale, dictionary.getWords().size());
+        }
+        return best / (double) (sRealSize * scale);
+    }
+
+    private static void assertWithinBudget(String what, int scale, double perWord, double budget, double atSmallestScale, double maxGrowth) {
+        String message = String.format("%s at %dx: %.0f per word", what, scale, perWord);
+        System.out.println(message);
+        assertTrue(message + ", budget " + budget, perWord <= budget);
+        assertTrue(message + ", " + atSmallestScale + " at " + SCALES[0] + "x", perWord <= atSmallestScale * maxGrowth);
+    }
+
+    @Test
+    public void load_withinBudgetAtEachSize() {
+        // warm up, so the smallest scale isn't measured with unoptimised code
+        loadTime(SCALES[0], true);
+        double smallest = 0;
+        for (int scale : SCALES) {
+            double perWord = loadTime(scale, true);
+            if (scale == SCALES[0]) smallest = perWord;
+            assertWithinBudget("compiled load ns", scale, perWord, LOAD_NANOS_PER_WORD, smallest, MAX_TIME_GROWTH);
+        }
+    }
+
+    @Test
+    public void textLoad_withinBudgetAtEachSize() {
+        loadTime(SCALES[0], false);
+        double smallest = 0;
+        for (int scale : SCALES) {
+            double perWord = loadTime(scale, false);
+            if (scale == SCALES[0]) smallest = perWord;
+            assertWithinBudget("text load ns", scale, perWord, TEXT_LOAD_NANOS_PER_WORD, smallest, MAX_TIME_GROWTH);
+        }
+    }
+
+    @Test
+    public void memory_withinBudgetAtEachSize() {
+        double smallest = 0;
+        for (int scale : SCALES) {
+            long before = usedMemory();
+            Dictionary dictionary = new Dictionary(context(scale));
+            long retained = usedMemory() - before;
+            double perWord = retained / (double) dictionary.getWords().size();
+            if (scale == SCALES[0]) smallest = perWord;
+            assertWithinBudget("retained bytes", scale, perWord, RETAINED_BYTES_PER_WORD, smallest, MAX_MEMORY_GROWTH);
+        }
+    }
+
+    @Test
+    public void search_withinBudgetAtEachSize() {
+        double smallest = 0;
+        for (int scale : SCALES) {
+            Dictionary dictionary = new Dictionary(context(scale));
+            dictionary.buildFuzzyIndex();
+            // The slowest term, each timed at its best of a few runs.
+            long worst = 0;
+            for (String term : TERMS) {
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < 5; i++) {
+                    long start = System.nanoTime();
+                    dictionary.getWords(term);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                worst = Math.max(worst, best);
+            }
+            double perWord = worst / (double) dictionary.getWords().size();
+            if (scale == SCALES[0]) smallest = perWord;
+            assertWithinBudget("slowest search ns", scale, perWord, SEARCH_NANOS_PER_WORD, smallest, MAX_TIME_GROWTH);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles the word list asset into the binary dictionary loaded by the app.
+ */
+public class CompileDictionaryTask extends DefaultTask {
+    private File source;
+    private File destination;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getSource() {
+        return source;
+    }
+
+    public void setSource(File source) {
+        this.source = source;
+    }
+
+    @OutputFile
+    public File getDestination() {
+        return destination;
+    }
+
+    public void setDestination(File destination) {
+        this.destination = destination;
+    }
+
+    @TaskAction
+    public void compile() throws IOException {
+        DictionaryCompiler.compile(source, destination);
+    }
+}
@@ -0,0 +1,200 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the tab separated word list into the binary format read by DictionaryFile in the
+ * app. Both sides must agree on the layout, which is (all integers big endian):
+ *
+ * <pre>
+ * int      magic ("NZSL")
+ * int      version
+ * int      number of entries
+ * int      number of strings
+ * int      number of prefixes
+ * int      size of a string index in the entry records, 2 or 4 bytes
+ * int[]    offset of each string in the string data, plus the end offset
+ * short[]  fixed width entry records, one string index per field (int[] if the indexes
+ *          don't fit in an unsigned short)
+ * byte[]   string data
+ * </pre>
+ *
+ * Each distinct string is only stored once. A stored string is a byte naming the prefix it
+ * starts with (0 for none, otherwise the prefix's string index plus one) followed by the rest
+ * of it in UTF-8. The prefixes are the first strings in the table and have no prefix of their
+ * own; they're the long starts shared by a whole field, like the video URLs' host and path.
+ *
+ * Entries are written in the order the app displays them, so the word list doesn't need to
+ * be sorted again at runtime.
+ */
+public class DictionaryCompiler {
+    public static final int MAGIC = 0x4E5A534C;
+    public static final int VERSION = 2;
+    public static final int FIELDS = 7;
+
+    // Shorter common starts aren't worth a prefix.
+    private static final int MIN_PREFIX = 8;
+    private static final int MAX_PREFIXES = 255;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static void compile(File source, File destination) throws IOException {
+        List<String[]> entries = read(source);
+        Collections.sort(entries, new Comparator<String[]>() {
+            public int compare(String[] a, String[] b) {
+                return skipParens(a[0]).compareToIgnoreCase(skipParens(b[0]));
+            }
+        });
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<String> prefixes = prefixes(entries);
+        for (String prefix : prefixes) {
+            strings.put(prefix, strings.size());
+        }
+        int[] records = new int[entries.size() * FIELDS];
+        for (int i = 0; i < entries.size(); i++) {
+            String[] entry = entries.get(i);
+            for (int f = 0; f < FIELDS; f++) {
+                Integer index = strings.get(entry[f]);
+                if (index == null) {
+                    index = strings.size();
+                    strings.put(entry[f], index);
+                }
+                records[i * FIELDS + f] = index;
+            }
+        }
+        int indexSize = strings.size() <= 0x10000 ? 2 : 4;
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.size() + 1];
+        int s = 0;
+        for (String string : strings.keySet()) {
+            offsets[s] = data.size();
+            int prefix = -1;
+            if (s >= prefixes.size()) {
+                for (int p = 0; p < prefixes.size(); p++) {
+                    if (string.startsWith(prefixes.get(p))
+                            && (prefix < 0 || prefixes.get(p).length() > prefixes.get(prefix).length())) {
+                        prefix = p;
+                    }
+                }
+            }
+            data.write(prefix + 1);
+            byte[] bytes = string.substring(prefix >= 0 ? prefixes.get(prefix).length() : 0).getBytes(UTF8);
+            data.write(bytes, 0, bytes.length);
+            s++;
+        }
+        offsets[s] = data.size();
+
+        destination.getParentFile().mkdirs();
+        OutputStream file = new FileOutputStream(destination);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(strings.size());
+            out.writeInt(prefixes.size());
+            out.writeInt(indexSize);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int record : records) {
+                if (indexSize == 2) {
+                    out.writeShort(record);
+                } else {
+                    out.writeInt(record);
+                }
+            }
+            data.writeTo(out);
+            out.flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * The longest start shared by every value of each field, for the fields where it's long
+     * enough to be worth storing once.
+     */
+    private static List<String> prefixes(List<String[]> entries) {
+        List<String> prefixes = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            String common = null;
+            for (String[] entry : entries) {
+                String value = entry[f];
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (common == null) {
+                    common = value;
+                } else {
+                    int n = 0;
+                    int max = Math.min(common.length(), value.length());
+                    while (n < max && common.charAt(n) == value.charAt(n)) {
+                        n++;
+                    }
+                    if (n > 0 && Character.isHighSurrogate(common.charAt(n - 1))) {
+                        n--;
+                    }
+                    common = common.substring(0, n);
+                }
+            }
+            if (common != null && common.length() >= MIN_PREFIX && !prefixes.contains(common)
+                    && prefixes.size() < MAX_PREFIXES) {
+                prefixes.add(common);
+            }
+        }
+        return prefixes;
+    }
+
+    static List<String[]> read(File source) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        BufferedReader f = new BufferedReader(new InputStreamReader(new FileInputStream(source), UTF8));
+        try {
+            int line = 0;
+            while (true) {
+                String s = f.readLine();
+                if (s == null) {
+                    break;
+                }
+                line++;
+                String[] a = s.split("\t");
+                if (a.length != FIELDS) {
+                    throw new IOException(source + ":" + line + ": expected " + FIELDS + " fields but found " + a.length);
+                }
+                entries.add(a);
+            }
+        } finally {
+            f.close();
+        }
+        return entries;
+    }
+
+    // Must match Dictionary.skip_parens in the app
+    private static String skipParens(String s) {
+        if (s.charAt(0) == '(') {
+            int i = s.indexOf(") ");
+            if (i > 0) {
+                s = s.substring(i + 2);
+            }
+        }
+        return s;
+    }
+}
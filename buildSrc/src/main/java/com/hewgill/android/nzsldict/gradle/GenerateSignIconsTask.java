@@ -0,0 +1,69 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Generates the table of handshape and location drawables, checking that every code in the
+ * word list has one.
+ */
+public class GenerateSignIconsTask extends DefaultTask {
+    private File wordList;
+    private FileCollection drawables;
+    private List<String> withoutImages;
+    private File destination;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getWordList() {
+        return wordList;
+    }
+
+    public void setWordList(File wordList) {
+        this.wordList = wordList;
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public FileCollection getDrawables() {
+        return drawables;
+    }
+
+    public void setDrawables(FileCollection drawables) {
+        this.drawables = drawables;
+    }
+
+    @Input
+    public List<String> getWithoutImages() {
+        return withoutImages;
+    }
+
+    public void setWithoutImages(List<String> withoutImages) {
+        this.withoutImages = withoutImages;
+    }
+
+    @OutputDirectory
+    public File getDestination() {
+        return destination;
+    }
+
+    public void setDestination(File destination) {
+        this.destination = destination;
+    }
+
+    @TaskAction
+    public void generate() throws IOException {
+        SignIconsGenerator.generate(wordList, drawables.getFiles(), withoutImages, destination);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs the handshape and location icons into one image, read by IconAtlas in the app. Each
+ * icon is scaled to fit a square cell, keeping its shape, and centred in it on white, which
+ * is the colour of the gallery cells. The index is a tab separated line per icon:
+ *
+ * <pre>
+ * name (the drawable's resource name)   x   y   width   height
+ * </pre>
+ *
+ * giving where the icon was drawn in the atlas, in pixels.
+ */
+public class IconAtlasPacker {
+    public static final String IMAGE = "atlas.png";
+    public static final String INDEX = "atlas.txt";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static void pack(List<File> icons, int cellSize, File destination) throws IOException {
+        List<File> sorted = new ArrayList<>(icons);
+        Collections.sort(sorted);
+        int columns = (int) Math.ceil(Math.sqrt(sorted.size()));
+        int rows = (sorted.size() + columns - 1) / columns;
+
+        BufferedImage atlas = new BufferedImage(columns * cellSize, rows * cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = atlas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, atlas.getWidth(), atlas.getHeight());
+
+        destination.mkdirs();
+        Writer index = new OutputStreamWriter(new FileOutputStream(new File(destination, INDEX)), UTF8);
+        try {
+            for (int i = 0; i < sorted.size(); i++) {
+                File file = sorted.get(i);
+                BufferedImage icon = ImageIO.read(file);
+                if (icon == null) {
+                    throw new IOException(file + ": not an image");
+                }
+                // Icons are only ever made smaller, so none of them lose detail by being
+                // scaled up here and down again when shown.
+                double scale = Math.min(1.0, (double) cellSize / Math.max(icon.getWidth(), icon.getHeight()));
+                int width = (int) Math.round(icon.getWidth() * scale);
+                int height = (int) Math.round(icon.getHeight() * scale);
+                int x = i % columns * cellSize + (cellSize - width) / 2;
+                int y = i / columns * cellSize + (cellSize - height) / 2;
+                g.drawImage(icon, x, y, width, height, null);
+                index.write(String.format(Locale.US, "%s\t%d\t%d\t%d\t%d\n", name(file), x, y, width, height));
+            }
+        } finally {
+            index.close();
+            g.dispose();
+        }
+        if (!ImageIO.write(atlas, "png", new File(destination, IMAGE))) {
+            throw new IOException("no PNG writer");
+        }
+    }
+
+    private static String name(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
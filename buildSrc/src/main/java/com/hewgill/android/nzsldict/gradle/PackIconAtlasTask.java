@@ -0,0 +1,56 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Packs the gallery icons into the atlas asset drawn by the handshape search galleries.
+ */
+public class PackIconAtlasTask extends DefaultTask {
+    private FileCollection icons;
+    private int cellSize;
+    private File destination;
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public FileCollection getIcons() {
+        return icons;
+    }
+
+    public void setIcons(FileCollection icons) {
+        this.icons = icons;
+    }
+
+    @Input
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public void setCellSize(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    @OutputDirectory
+    public File getDestination() {
+        return destination;
+    }
+
+    public void setDestination(File destination) {
+        this.destination = destination;
+    }
+
+    @TaskAction
+    public void pack() throws IOException {
+        IconAtlasPacker.pack(new ArrayList<>(icons.getFiles()), cellSize, destination);
+    }
+}
@@ -0,0 +1,179 @@
+package com.hewgill.android.nzsldict.gradle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates SignIcons, the app's table from handshape and location codes in the word list to
+ * the drawables that picture them, so they are looked up without going through
+ * Resources.getIdentifier.
+ *
+ * Handshape drawables are named after their code ("handshape_1_1_1" for "1.1.1"). Location
+ * drawables are numbered and then named after their location, with spaces and slashes made
+ * into underscores ("location_4_10_neck_throat" for "neck/throat"). Both are listed in
+ * numerical order, which is the order the handshape search galleries show them in.
+ *
+ * Every code in the word list must have a drawable unless it is one of the codes known to
+ * have no picture, so a new or misspelt code fails the build rather than showing no picture.
+ */
+public class SignIconsGenerator {
+    public static final String PACKAGE = "com.hewgill.android.nzsldict";
+    public static final String CLASS = "SignIcons";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // Columns of the word list
+    private static final int HANDSHAPE = 5;
+    private static final int LOCATION = 6;
+
+    public static void generate(File wordList, Collection<File> drawables, Collection<String> withoutImages,
+                                File destination) throws IOException {
+        List<String> handshapeDrawables = new ArrayList<>();
+        List<String> locationDrawables = new ArrayList<>();
+        for (File file : drawables) {
+            String name = file.getName().substring(0, file.getName().lastIndexOf('.'));
+            if (name.startsWith("handshape_")) {
+                handshapeDrawables.add(name);
+            } else if (name.startsWith("location_")) {
+                locationDrawables.add(name);
+            }
+        }
+        Collections.sort(handshapeDrawables, NUMERICAL);
+        Collections.sort(locationDrawables, NUMERICAL);
+
+        List<String[]> entries = DictionaryCompiler.read(wordList);
+        Set<String> handshapeCodes = new TreeSet<>();
+        Set<String> locationCodes = new TreeSet<>();
+        for (String[] entry : entries) {
+            // Some words have no handshape or location recorded.
+            if (!entry[HANDSHAPE].isEmpty()) {
+                handshapeCodes.add(entry[HANDSHAPE]);
+            }
+            if (!entry[LOCATION].isEmpty()) {
+                locationCodes.add(entry[LOCATION]);
+            }
+        }
+
+        Map<String, String> handshapes = new LinkedHashMap<>();
+        for (String name : handshapeDrawables) {
+            handshapes.put(name.substring("handshape_".length()).replace('_', '.'), name);
+        }
+        // Location names can't be told from their drawables' names, so are taken from the
+        // word list where they are used.
+        Map<String, String> locationNames = new LinkedHashMap<>();
+        for (String code : locationCodes) {
+            locationNames.put(code.replace(' ', '_').replace('/', '_'), code);
+        }
+        Map<String, String> locations = new LinkedHashMap<>();
+        for (String name : locationDrawables) {
+            String key = name.replaceFirst("^location_\\d+_\\d+_", "");
+            String code = locationNames.get(key);
+            locations.put(code != null ? code : key.replace('_', ' '), name);
+        }
+
+        List<String> unknown = new ArrayList<>();
+        for (String code : handshapeCodes) {
+            if (!handshapes.containsKey(code) && !withoutImages.contains(code)) {
+                unknown.add("handshape \"" + code + "\"");
+            }
+        }
+        for (String code : locationCodes) {
+            if (!locations.containsKey(code) && !withoutImages.contains(code)) {
+                unknown.add("location \"" + code + "\"");
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IOException(wordList + ": no drawable for " + unknown);
+        }
+
+        File file = new File(destination, PACKAGE.replace('.', '/') + "/" + CLASS + ".java");
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8));
+        try {
+            out.println("// Generated by SignIconsGenerator in buildSrc from the word list and drawables. Do not edit.");
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * The drawables picturing each handshape and location code in the word list.");
+            out.println(" */");
+            out.println("public final class " + CLASS + " {");
+            writeArrays(out, "HANDSHAPE", handshapes);
+            writeArrays(out, "LOCATION", locations);
+            out.println("    private " + CLASS + "() {");
+            out.println("    }");
+            writeLookup(out, "handshape", handshapes);
+            writeLookup(out, "location", locations);
+            out.println("}");
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("failed to write " + file);
+        }
+    }
+
+    private static void writeArrays(PrintWriter out, String kind, Map<String, String> drawables) {
+        out.println("    // " + kind.toLowerCase() + " codes with drawables, in gallery order");
+        out.println("    static final String[] " + kind + "_CODES = {");
+        for (String code : drawables.keySet()) {
+            out.println("            \"" + code + "\",");
+        }
+        out.println("    };");
+        out.println("    static final int[] " + kind + "_DRAWABLES = {");
+        for (String name : drawables.values()) {
+            out.println("            R.drawable." + name + ",");
+        }
+        out.println("    };");
+        out.println();
+    }
+
+    private static void writeLookup(PrintWriter out, String kind, Map<String, String> drawables) {
+        out.println();
+        out.println("    /**");
+        out.println("     * Return the drawable for the " + kind + " code, or 0 if it has none.");
+        out.println("     */");
+        out.println("    public static int " + kind + "Drawable(String code) {");
+        out.println("        switch (code) {");
+        for (Map.Entry<String, String> e : drawables.entrySet()) {
+            out.println("            case \"" + e.getKey() + "\":");
+            out.println("                return R.drawable." + e.getValue() + ";");
+        }
+        out.println("            default:");
+        out.println("                return 0;");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    // Orders names by the numbers in them, so "location_4_10" comes after "location_4_9".
+    private static final Comparator<String> NUMERICAL = new Comparator<String>() {
+        public int compare(String a, String b) {
+            String[] x = a.split("_");
+            String[] y = b.split("_");
+            for (int i = 0; i < Math.min(x.length, y.length); i++) {
+                int c = isNumber(x[i]) && isNumber(y[i])
+                        ? Integer.compare(Integer.parseInt(x[i]), Integer.parseInt(y[i]))
+                        : x[i].compareTo(y[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(x.length, y.length);
+        }
+    };
+
+    private static boolean isNumber(String s) {
+        return s.matches("\\d+");
+    }
+}